@@ -0,0 +1,245 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import graphs.*;
+
+/**
+    Six Degrees of Kevin Bacon as an HTTP service.
+
+    Loads the database once and answers
+
+        GET /bacon?actor=NAME[&from=NAME][&max_degrees=N]
+            [&max_visited=N][&timeout_ms=N]
+
+    with the path from the actor to Kevin Bacon (or to the other
+    actor) as JSON, or 404 with the closest actor names if a name
+    isn't known, and GET /stats with tree cache counters and
+    component sizes. Plain requests run Kevin.solve(), which keeps
+    its search state in per-request arrays and a shared tree cache
+    rather than in the graph's labels, so requests can run
+    concurrently. Requests with any of the limits run their own
+    bounded search (Kevin.solveWithin()) instead and also report a
+    status ("found", "no path", "beyond depth" or "budget
+    exceeded") and how much of the graph they covered.
+
+    Requests are handled one thread each: virtual threads where the
+    JVM has them, a cached pool of platform threads otherwise.
+
+    With --compressed the database is read into a CompressedGraph
+    through a SnapshotBuilder, so there's never a SparseGraph.
+    The builder's int array snapshot stays around for the cached
+    BFS trees, though, so afterwards the adjacency is held twice:
+    compressed for single searches and plain for the trees.
+
+    Usage: java BaconServer [--port p] [--compressed] database
+*/
+public final class BaconServer {
+    // names suggested when an actor can't be found
+    private static final int SUGGESTIONS = 5;
+
+    // Shut up checkstyle.
+    private BaconServer() {}
+
+    // One thread per task, virtual if this JVM supports them.
+    private static ExecutorService executor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    // Query parameters of a request, decoded.
+    private static Map<String, String> query(URI uri) {
+        Map<String, String> q = new HashMap<>();
+        String raw = uri.getRawQuery();
+        if (raw == null) {
+            return q;
+        }
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                q.put(URLDecoder.decode(pair.substring(0, eq),
+                    StandardCharsets.UTF_8), URLDecoder.decode(
+                    pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return q;
+    }
+
+    // String as a JSON literal.
+    private static String json(String s) {
+        StringBuilder b = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                b.append('\\').append(c);
+            } else if (c < 0x20) {
+                b.append(String.format("\\u%04x", (int) c));
+            } else {
+                b.append(c);
+            }
+        }
+        return b.append('"').toString();
+    }
+
+    private static void reply(HttpExchange x, int status, String body)
+        throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        x.getResponseHeaders().set("Content-Type", "application/json");
+        x.sendResponseHeaders(status, bytes.length);
+        try (OutputStream o = x.getResponseBody()) {
+            o.write(bytes);
+        }
+    }
+
+    private static void bacon(HttpExchange x) throws IOException {
+        Map<String, String> q = query(x.getRequestURI());
+        String name = q.get("actor");
+        String from = q.getOrDefault("from", "Bacon, Kevin");
+        if (name == null) {
+            reply(x, 400, "{\"error\": \"missing actor\"}");
+            return;
+        }
+        Vertex<String> actor = Kevin.find(name);
+        Vertex<String> root = Kevin.find(from);
+        if (actor == null || root == null) {
+            String missing = actor == null ? name : from;
+            StringBuilder b = new StringBuilder();
+            b.append("{\"error\": ").append(json("can't find " + missing));
+            b.append(", \"suggestions\": [");
+            List<String> close = Kevin.names().closest(missing, SUGGESTIONS);
+            for (int i = 0; i < close.size(); i++) {
+                b.append(i == 0 ? "" : ", ").append(json(close.get(i)));
+            }
+            reply(x, 404, b.append("]}").toString());
+            return;
+        }
+
+        StringBuilder b = new StringBuilder();
+        b.append("{\"actor\": ").append(json(name));
+        b.append(", \"from\": ").append(json(from));
+        List<String> path;
+        if (q.containsKey("max_degrees") || q.containsKey("max_visited")
+            || q.containsKey("timeout_ms")) {
+            BoundedSearch s;
+            try {
+                s = Kevin.solveWithin(root, actor,
+                    Integer.parseInt(q.getOrDefault("max_degrees", "-1")),
+                    Long.parseLong(q.getOrDefault("max_visited", "-1")),
+                    Long.parseLong(q.getOrDefault("timeout_ms", "-1")));
+            } catch (NumberFormatException e) {
+                reply(x, 400, "{\"error\": \"bad limit\"}");
+                return;
+            }
+            int[] ids = s == null ? null : s.path();
+            path = ids == null ? null : Kevin.elements(ids);
+            b.append(", \"status\": ").append(json(s == null ? "no path"
+                : s.status().name().toLowerCase().replace('_', ' ')));
+            if (s != null) {
+                b.append(String.format(", \"visited\": %d, \"reached\": %d,"
+                    + " \"scanned\": %d, \"depth\": %d, \"millis\": %.3f",
+                    s.visited(), s.reached(), s.scanned(), s.depth() / 2,
+                    s.nanos() / 1e6));
+            }
+        } else {
+            path = Kevin.solve(root, actor);
+        }
+        if (path == null) {
+            b.append(", \"degrees\": null, \"path\": []}");
+        } else {
+            // path alternates actors and movies
+            b.append(", \"degrees\": ").append((path.size() - 1) / 2);
+            b.append(", \"path\": [");
+            for (int i = 0; i < path.size(); i++) {
+                b.append(i == 0 ? "" : ", ").append(json(path.get(i)));
+            }
+            b.append("]}");
+        }
+        reply(x, 200, b.toString());
+    }
+
+    private static void stats(HttpExchange x) throws IOException {
+        BfsTreeCache c = Kevin.trees();
+        Components k = Kevin.components();
+        int big = k.largest();
+        reply(x, 200, String.format("{\"trees\": %d, \"capacity\": %d,"
+            + " \"hits\": %d, \"misses\": %d, \"evictions\": %d,"
+            + " \"components\": %d, \"largest\": %d}", c.size(),
+            c.capacity(), c.hits(), c.misses(), c.evictions(), k.count(),
+            big < 0 ? 0 : k.size(big)));
+    }
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws IOException If database file cannot be read properly
+            or the port can't be bound.
+    */
+    public static void main(String[] args) throws IOException {
+        int port = 8080;
+        boolean compressed = false;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--port") && first + 1 < args.length) {
+                port = Integer.parseInt(args[++first]);
+            } else if (args[first].equals("--compressed")) {
+                compressed = true;
+            } else {
+                System.out.printf("Error: Unknown option %s.\n", args[first]);
+                System.exit(1);
+            }
+            first++;
+        }
+        if (args.length - first < 1) {
+            System.out.printf("Usage: java BaconServer [--port p]"
+                + " [--compressed] database\n");
+            System.exit(1);
+        }
+
+        long start = System.nanoTime();
+        Kevin.load(args[first], compressed);
+        Kevin.trees();
+        Kevin.names();
+        System.err.printf("loaded %s in %d ms\n", args[first],
+            (System.nanoTime() - start) / 1000000);
+
+        // headers and body go out as separate writes; without this
+        // Nagle's algorithm holds the body back for a delayed ACK
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/bacon", x -> {
+            try {
+                bacon(x);
+            } finally {
+                x.close();
+            }
+        });
+        server.createContext("/stats", x -> {
+            try {
+                stats(x);
+            } finally {
+                x.close();
+            }
+        });
+        server.setExecutor(executor());
+        server.start();
+        System.err.printf("listening on port %d\n", port);
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+    Bounded cache of breadth-first search trees keyed by root.
+
+    Each tree is a parent array over the ids of one snapshot, so
+    once a root is cached any target is a walk up the array. Query
+    traffic is skewed toward a few famous roots, so we keep the
+    least recently used trees up to a fixed budget of bytes.
+
+    If several threads ask for the same missing root at once only
+    the first runs the BFS; the others wait for its result.
+*/
+public final class BfsTreeCache {
+    private final GraphSnapshot<?> g;
+    private final int maxTrees;
+
+    // completed trees, least recently used first
+    private final LinkedHashMap<Integer, int[]> trees;
+
+    // trees somebody is computing right now
+    private final ConcurrentHashMap<Integer, CompletableFuture<int[]>> pending =
+        new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+        Create an empty cache.
+        @param g Snapshot the trees are computed on.
+        @param maxBytes Budget for cached parent arrays; at least
+            one tree is always kept.
+    */
+    public BfsTreeCache(GraphSnapshot<?> g, long maxBytes) {
+        this.g = g;
+        long perTree = 4L * g.size() + 16;
+        this.maxTrees = (int) Math.max(1, Math.min(Integer.MAX_VALUE,
+            maxBytes / perTree));
+        this.trees = new LinkedHashMap<Integer, int[]>(16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry<Integer, int[]> e) {
+                if (this.size() > BfsTreeCache.this.maxTrees) {
+                    BfsTreeCache.this.evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+        Breadth-first search tree for a root.
+        @param root Vertex id in the snapshot.
+        @return Parent array as computed by GraphSnapshot.parents();
+            callers must not modify it.
+    */
+    public int[] tree(int root) {
+        return this.tree(root, null);
+    }
+
+    /**
+        Breadth-first search tree for a root, saying what it cost.
+        @param root Vertex id in the snapshot.
+        @param work If not null, work[0] and work[1] get the vertices
+            visited and edges scanned added if this call ran the
+            search; a tree from the cache costs nothing.
+        @return Parent array as computed by GraphSnapshot.parents();
+            callers must not modify it.
+    */
+    public int[] tree(int root, long[] work) {
+        synchronized (this.trees) {
+            int[] t = this.trees.get(root);
+            if (t != null) {
+                this.hits.incrementAndGet();
+                return t;
+            }
+        }
+
+        CompletableFuture<int[]> mine = new CompletableFuture<int[]>();
+        CompletableFuture<int[]> theirs = this.pending.putIfAbsent(root, mine);
+        if (theirs != null) {
+            // somebody else is already on it
+            this.hits.incrementAndGet();
+            return theirs.join();
+        }
+
+        try {
+            // the previous owner may have finished since we looked
+            int[] t;
+            synchronized (this.trees) {
+                t = this.trees.get(root);
+            }
+            if (t != null) {
+                this.hits.incrementAndGet();
+            } else {
+                this.misses.incrementAndGet();
+                t = this.g.parents(root);
+                if (work != null) {
+                    // the search expanded every vertex it reached
+                    for (int v = 0; v < t.length; v++) {
+                        if (t[v] >= 0) {
+                            work[0]++;
+                            work[1] += this.g.degree(v);
+                        }
+                    }
+                }
+            }
+            synchronized (this.trees) {
+                this.trees.put(root, t);
+            }
+            mine.complete(t);
+            return t;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            this.pending.remove(root);
+        }
+    }
+
+    /**
+        Shortest path from a root to a target.
+        @param root Vertex id to start from.
+        @param target Vertex id to end at.
+        @return Vertex ids from target back to root, or null if the
+            target can't be reached.
+    */
+    public int[] path(int root, int target) {
+        return this.path(root, target, null);
+    }
+
+    /**
+        Shortest path from a root to a target, saying what it cost.
+        @param root Vertex id to start from.
+        @param target Vertex id to end at.
+        @param work As for tree(root, work).
+        @return Vertex ids from target back to root, or null if the
+            target can't be reached.
+    */
+    public int[] path(int root, int target, long[] work) {
+        return GraphSnapshot.path(this.tree(root, work), target);
+    }
+
+    /**
+        Number of lookups answered without running a BFS.
+        @return Hit count.
+    */
+    public long hits() {
+        return this.hits.get();
+    }
+
+    /**
+        Number of lookups that ran a BFS.
+        @return Miss count.
+    */
+    public long misses() {
+        return this.misses.get();
+    }
+
+    /**
+        Number of trees dropped to stay within budget.
+        @return Eviction count.
+    */
+    public long evictions() {
+        return this.evictions.get();
+    }
+
+    /**
+        Number of trees currently cached.
+        @return Tree count.
+    */
+    public int size() {
+        synchronized (this.trees) {
+            return this.trees.size();
+        }
+    }
+
+    /**
+        Most trees the budget allows.
+        @return Tree count.
+    */
+    public int capacity() {
+        return this.maxTrees;
+    }
+}
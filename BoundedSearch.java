@@ -0,0 +1,298 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import graphs.*;
+
+/**
+    One breadth-first search for a target, with limits.
+
+    The search keeps its state in flat arrays rather than in the
+    graph's labels, so several can run on the same graph at once,
+    and the object itself is the neighbour callback so expanding a
+    vertex allocates nothing. It goes level by level and stops
+    early when:
+
+    - the target is reached (FOUND),
+    - the next level would be deeper than maxDepth hops
+      (BEYOND_DEPTH: there's no path of at most maxDepth hops),
+    - maxVisited vertices have been expanded, or maxNanos have
+      passed, with the target still not found (BUDGET_EXCEEDED).
+
+    If it runs out of vertices the status is NO_PATH. Whatever the
+    outcome, the counters describe the work actually done, so a
+    search cut short still reports how far it got. The clock is
+    read once every CLOCK_EVERY vertices.
+
+    Given a HubProjection, a hub actor expanded at level L has its
+    movies marked as reached at L + 1 without being queued, and its
+    co-stars are parked until level L + 1 has been queued in full,
+    then queued as the start of level L + 2 with the shared movie as
+    their parent. Levels stay exactly as without the shortcut, so
+    paths are just as short and still alternate actor and movie;
+    only the casts of the hub's movies are never scanned.
+*/
+final class BoundedSearch implements IntConsumer {
+    /** How a search ended. */
+    enum Status {
+        /** Target reached; path() has the way back. */
+        FOUND,
+        /** Every reachable vertex was tried. */
+        NO_PATH,
+        /** No path within the depth limit. */
+        BEYOND_DEPTH,
+        /** Vertex or time budget spent before an answer. */
+        BUDGET_EXCEEDED
+    }
+
+    /** No limit, for any of the limits. */
+    static final long UNLIMITED = Long.MAX_VALUE;
+
+    // vertices expanded between looks at the clock
+    private static final int CLOCK_EVERY = 256;
+
+    private final Graph<?, ?> graph;
+    private final int[] parent;
+    private final int[] queue;
+    private final int target;
+    private final BitSet skip;
+    private final HubProjection hubs;
+    private final IntConsumer mark;
+    private final HubProjection.Visitor costar;
+    // co-stars waiting for the next level to be queued, and how many
+    // queued entries at the tail belong to the level after it
+    private final int[] pending;
+    private int pended;
+    private int carried;
+    private long marked;
+    private int head;
+    private int tail;
+    private int from;
+    private boolean found;
+
+    private Status status;
+    private long visited;
+    private long scanned;
+    private int depth;
+    private long nanos;
+    private StringBuilder frontier;
+
+    /**
+        Set up a search.
+        @param g Graph to search, by vertex id.
+        @param root Vertex id to start from.
+        @param target Vertex id to look for.
+        @param skip Vertex ids never to enter, or null for none.
+    */
+    BoundedSearch(Graph<?, ?> g, int root, int target, BitSet skip) {
+        this(g, root, target, skip, null);
+    }
+
+    /**
+        Set up a search that takes shortcuts through hubs.
+        @param g Graph to search, by vertex id.
+        @param root Vertex id to start from.
+        @param target Vertex id to look for.
+        @param skip Vertex ids never to enter, or null for none.
+        @param hubs Co-stars of hub actors in g, or null for none.
+        @throws IllegalArgumentException If hubs was built with
+            other exclusions than skip.
+    */
+    BoundedSearch(Graph<?, ?> g, int root, int target, BitSet skip,
+        HubProjection hubs) {
+        if (hubs != null && hubs.excludes() != skip) {
+            throw new IllegalArgumentException("Projection skips other movies");
+        }
+        this.graph = g;
+        this.parent = new int[g.idBound()];
+        this.queue = new int[g.idBound()];
+        this.target = target;
+        this.skip = skip;
+        this.hubs = hubs;
+        this.pending = hubs == null ? null : new int[g.idBound()];
+        this.mark = this::mark;
+        this.costar = this::costar;
+        Arrays.fill(this.parent, -1);
+        this.parent[root] = root;
+        this.queue[this.tail++] = root;
+        this.found = root == target;
+    }
+
+    public void accept(int w) {
+        if (this.found) {
+            return;
+        }
+        this.scanned++;
+        if (this.parent[w] < 0 && (this.skip == null || !this.skip.get(w))) {
+            this.parent[w] = this.from;
+            this.queue[this.tail++] = w;
+            this.found = w == this.target;
+        }
+    }
+
+    // A movie of the hub being expanded.
+    private void mark(int m) {
+        if (this.found) {
+            return;
+        }
+        this.scanned++;
+        if (this.parent[m] < 0 && (this.skip == null || !this.skip.get(m))) {
+            this.parent[m] = this.from;
+            this.marked++;
+            this.found = m == this.target;
+        }
+    }
+
+    // A co-star of the hub being expanded, two levels down; via has
+    // been reached by now, by mark() if not before.
+    private void costar(int a, int via) {
+        if (this.found) {
+            return;
+        }
+        this.scanned++;
+        if (this.parent[a] < 0 && (this.skip == null || !this.skip.get(a))) {
+            this.parent[a] = via;
+            this.pending[this.pended++] = a;
+            if (a == this.target) {
+                this.found = true;
+                this.depth++;
+            }
+        }
+    }
+
+    /**
+        Run the search.
+        @param maxDepth Most hops from the root, or UNLIMITED.
+        @param maxVisited Most vertices to expand, or UNLIMITED.
+        @param maxNanos Most time to take, or UNLIMITED.
+        @param levels Whether to record frontier sizes per level.
+        @return How the search ended.
+        @throws IllegalStateException If it has run before.
+    */
+    Status run(long maxDepth, long maxVisited, long maxNanos, boolean levels) {
+        if (this.status != null) {
+            throw new IllegalStateException("Search already run");
+        }
+        long start = System.nanoTime();
+        this.frontier = levels ? new StringBuilder("1") : null;
+        Status out = Status.NO_PATH;
+        int end = this.tail;
+        while (!this.found && this.head < this.tail && out == Status.NO_PATH) {
+            if (this.depth >= maxDepth) {
+                out = Status.BEYOND_DEPTH;
+                break;
+            }
+            this.depth++;
+            end = this.tail - this.carried;
+            this.carried = 0;
+            long marks = this.marked;
+            while (!this.found && this.head < end) {
+                if (this.visited >= maxVisited || (maxNanos != UNLIMITED
+                    && this.visited % CLOCK_EVERY == 0
+                    && System.nanoTime() - start > maxNanos)) {
+                    out = Status.BUDGET_EXCEEDED;
+                    break;
+                }
+                this.from = this.queue[this.head++];
+                this.visited++;
+                if (this.hubs != null && this.depth < maxDepth
+                    && this.hubs.isHub(this.from)) {
+                    this.graph.forEachOutNeighbour(this.from, this.mark);
+                    this.hubs.forEachCostar(this.from, this.costar);
+                } else {
+                    this.graph.forEachOutNeighbour(this.from, this);
+                }
+            }
+            // the last level may be only partly expanded
+            long size = this.tail - end + this.marked - marks;
+            if (levels && size > 0) {
+                this.frontier.append(',').append(size);
+            }
+            // parked co-stars go after the level just queued
+            if (this.pended > 0) {
+                System.arraycopy(this.pending, 0, this.queue, this.tail,
+                    this.pended);
+                this.tail += this.pended;
+                this.carried = this.pended;
+                this.pended = 0;
+            }
+        }
+        this.nanos = System.nanoTime() - start;
+        this.status = this.found ? Status.FOUND : out;
+        return this.status;
+    }
+
+    /**
+        How the search ended.
+        @return Status, or null if it hasn't run.
+    */
+    Status status() {
+        return this.status;
+    }
+
+    /**
+        Path found.
+        @return Vertex ids from the target back to the root, or
+            null unless the status is FOUND.
+    */
+    int[] path() {
+        if (this.status != Status.FOUND) {
+            return null;
+        }
+        return GraphSnapshot.path(this.parent, this.target);
+    }
+
+    /**
+        Vertices expanded.
+        @return Count, root included.
+    */
+    long visited() {
+        return this.visited;
+    }
+
+    /**
+        Vertices reached, expanded or not.
+        @return Count, root and movies of hubs included.
+    */
+    long reached() {
+        return this.tail + this.marked;
+    }
+
+    /**
+        Edges looked at.
+        @return Count.
+    */
+    long scanned() {
+        return this.scanned;
+    }
+
+    /**
+        Depth of the search.
+        @return Hops from the root to the deepest level reached,
+            which may not have been reached in full.
+    */
+    int depth() {
+        return this.depth;
+    }
+
+    /**
+        Time the search ran.
+        @return Nanoseconds.
+    */
+    long nanos() {
+        return this.nanos;
+    }
+
+    /**
+        Frontier sizes.
+        @return New vertices per level, comma separated, or null
+            if they weren't recorded.
+    */
+    String frontier() {
+        return this.frontier == null ? null : this.frontier.toString();
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+
+/**
+    Pipelined reader for cast databases, plain or gzipped.
+
+    One thread reads (and, for gzip input, inflates) the file in
+    large chunks cut at line ends and hands each chunk to a pool of
+    parser threads, which decode it and split it into records. The
+    futures for the parsed chunks go through a bounded queue in file
+    order, so the caller sees records exactly as a BufferedReader
+    would have produced them while reading, inflating and parsing
+    all overlap. The bound keeps at most a few chunks in memory; a
+    stage that runs ahead simply blocks until the next one catches
+    up, so the whole load takes about as long as its slowest stage.
+
+    Gzip input is recognized by its magic number, not by name.
+*/
+public final class CastReader implements Closeable {
+    // bytes per chunk handed to a parser
+    private static final int CHUNK = 1 << 20;
+
+    // end of input marker in the queue
+    private static final Future<String[][]> END =
+        CompletableFuture.completedFuture(null);
+
+    private final ExecutorService parsers;
+    private final BlockingQueue<Future<String[][]>> ready;
+    private final Thread source;
+
+    // records of the current chunk and the next one to return
+    private String[][] batch = new String[0][];
+    private int next;
+    private boolean done;
+
+    /**
+        Start reading a database with one parser per spare core.
+        @param filename Database to read.
+        @throws IOException If the file can't be opened.
+    */
+    public CastReader(String filename) throws IOException {
+        this(filename, Math.max(1,
+            Runtime.getRuntime().availableProcessors() - 2));
+    }
+
+    /**
+        Start reading a database.
+        @param filename Database to read.
+        @param threads Number of parser threads.
+        @throws IOException If the file can't be opened.
+        @throws IllegalArgumentException If threads isn't positive.
+    */
+    public CastReader(String filename, int threads) throws IOException {
+        this(filename, threads, line -> line.split("/"));
+    }
+
+    /**
+        Start reading a database, splitting lines some other way.
+        @param filename Database to read.
+        @param threads Number of parser threads.
+        @param fields Splits a line, without its line end, into the
+            fields of a record; called on the parser threads.
+        @throws IOException If the file can't be opened.
+        @throws IllegalArgumentException If threads isn't positive.
+    */
+    CastReader(String filename, int threads,
+        Function<String, String[]> fields) throws IOException {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Need a parser thread");
+        }
+        InputStream in = open(filename);
+        Charset charset = Charset.defaultCharset();
+        this.parsers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "cast-parser");
+            t.setDaemon(true);
+            return t;
+        });
+        this.ready = new ArrayBlockingQueue<Future<String[][]>>(
+            2 * threads + 2);
+        this.source = new Thread(() -> this.pump(in, charset, fields),
+            "cast-reader");
+        this.source.setDaemon(true);
+        this.source.start();
+    }
+
+    // The file, inflated on the fly if it's gzipped.
+    private static InputStream open(String filename) throws IOException {
+        BufferedInputStream in = new BufferedInputStream(
+            new FileInputStream(filename), 1 << 16);
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        in.reset();
+        if (b0 == 0x1f && b1 == 0x8b) {
+            return new GZIPInputStream(in, 1 << 16);
+        }
+        return in;
+    }
+
+    // Source thread: cut the input into chunks of whole lines and
+    // queue a parse for each, in order.
+    private void pump(InputStream in, Charset charset,
+        Function<String, String[]> fields) {
+        try (InputStream s = in) {
+            byte[] buf = new byte[CHUNK];
+            int fill = 0;
+            while (true) {
+                int r = s.read(buf, fill, buf.length - fill);
+                if (r < 0) {
+                    break;
+                }
+                fill += r;
+                if (fill < buf.length) {
+                    continue;
+                }
+                int end = fill;
+                while (end > 0 && buf[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    // a single line longer than the buffer
+                    buf = Arrays.copyOf(buf, 2 * buf.length);
+                    continue;
+                }
+                byte[] chunk = Arrays.copyOf(buf, end);
+                this.ready.put(this.parsers.submit(() -> parse(chunk,
+                    chunk.length, charset, fields)));
+                byte[] rest = new byte[Math.max(CHUNK, 2 * (fill - end))];
+                System.arraycopy(buf, end, rest, 0, fill - end);
+                buf = rest;
+                fill -= end;
+            }
+            if (fill > 0) {
+                byte[] chunk = buf;
+                int len = fill;
+                this.ready.put(this.parsers.submit(() -> parse(chunk, len,
+                    charset, fields)));
+            }
+            this.ready.put(END);
+        } catch (InterruptedException | RejectedExecutionException e) {
+            // closed before the end
+            return;
+        } catch (Throwable e) {
+            // anything else, errors included, goes to next() as a
+            // failed chunk so the caller doesn't wait forever
+            CompletableFuture<String[][]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                this.ready.put(failed);
+            } catch (InterruptedException stop) {
+                return;
+            }
+        }
+    }
+
+    // Parser thread: decode whole lines, cut them the same way
+    // BufferedReader.readLine would and split them into fields.
+    private static String[][] parse(byte[] chunk, int len, Charset charset,
+        Function<String, String[]> fields) {
+        String text = new String(chunk, 0, len, charset);
+        ArrayList<String[]> out = new ArrayList<String[]>();
+        int from = 0;
+        while (from < text.length()) {
+            int nl = text.indexOf('\n', from);
+            int end = nl < 0 ? text.length() : nl;
+            int stop = end > from && text.charAt(end - 1) == '\r'
+                ? end - 1 : end;
+            out.add(fields.apply(text.substring(from, stop)));
+            from = end + 1;
+        }
+        return out.toArray(new String[0][]);
+    }
+
+    /**
+        Next record of the database.
+        @return Fields of the next line (movie first, then actors),
+            or null at the end of the input.
+        @throws IOException If the file can't be read or the reader
+            is interrupted.
+    */
+    public String[] next() throws IOException {
+        while (this.next == this.batch.length) {
+            if (this.done) {
+                return null;
+            }
+            String[][] b;
+            try {
+                b = this.ready.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            }
+            if (b == null) {
+                this.done = true;
+                return null;
+            }
+            this.batch = b;
+            this.next = 0;
+        }
+        return this.batch[this.next++];
+    }
+
+    /**
+        Stop reading and release the threads.
+    */
+    @Override
+    public void close() {
+        this.done = true;
+        this.source.interrupt();
+        this.parsers.shutdownNow();
+    }
+}
@@ -0,0 +1,223 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.Arrays;
+
+/**
+    Connected components of an undirected graph, by vertex id.
+
+    Edges are fed in with union() while the graph is built; a
+    union-find forest (union by size, path halving) keeps that at
+    nearly constant time per edge. flatten(), or else the first
+    query, turns the forest into a single int per vertex, numbering
+    components in order of their smallest vertex, so connected()
+    and the size lookups are array reads. A later union() just
+    throws the flat labels away to be rebuilt on the next query.
+
+    Building is meant for a single loading thread; once it's done
+    queries may come from any number of threads. The labels and
+    sizes are published together through a volatile field and never
+    change afterwards, so queries take no lock.
+
+    Two vertices in different components have no path between
+    them at all, so a search can be skipped; the converse only
+    holds if the search may use every edge.
+*/
+public final class Components {
+    // union-find forest; a root's weight is the size of its tree
+    private int[] parent = new int[1024];
+    private int[] weight = new int[1024];
+    private int n;
+
+    // flat labels and component sizes, null until needed
+    private volatile Flat flat;
+
+    // Labels by vertex and sizes by label, never changed once made.
+    private static final class Flat {
+        private final int[] label;
+        private final int[] sizes;
+
+        private Flat(int[] label, int[] sizes) {
+            this.label = label;
+            this.sizes = sizes;
+        }
+    }
+
+    /**
+        Make sure a vertex exists, as a component of its own if new.
+        @param v Vertex id.
+        @throws IllegalArgumentException If v is negative.
+    */
+    public void add(int v) {
+        if (v < 0) {
+            throw new IllegalArgumentException("Invalid vertex id");
+        }
+        if (v >= this.parent.length) {
+            int len = Math.max(v + 1, 2 * this.parent.length);
+            this.parent = Arrays.copyOf(this.parent, len);
+            this.weight = Arrays.copyOf(this.weight, len);
+        }
+        for (; this.n <= v; this.n++) {
+            this.parent[this.n] = this.n;
+            this.weight[this.n] = 1;
+            this.flat = null;
+        }
+    }
+
+    // Root of the tree holding v, halving the path on the way.
+    private int find(int v) {
+        while (this.parent[v] != v) {
+            this.parent[v] = this.parent[this.parent[v]];
+            v = this.parent[v];
+        }
+        return v;
+    }
+
+    /**
+        Record an edge.
+        @param a One end.
+        @param b Other end.
+        @throws IllegalArgumentException If either id is negative.
+    */
+    public void union(int a, int b) {
+        this.add(Math.max(a, b));
+        this.add(Math.min(a, b));
+        int ra = this.find(a);
+        int rb = this.find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (this.weight[ra] < this.weight[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        this.parent[rb] = ra;
+        this.weight[ra] += this.weight[rb];
+        this.flat = null;
+    }
+
+    // Flat labels, computed on first use after a change.
+    private Flat labels() {
+        Flat f = this.flat;
+        return f != null ? f : this.build();
+    }
+
+    private synchronized Flat build() {
+        if (this.flat == null) {
+            int[] l = new int[this.n];
+            int[] root = new int[this.n];
+            Arrays.fill(root, -1);
+            int k = 0;
+            for (int v = 0; v < this.n; v++) {
+                int r = this.find(v);
+                if (root[r] < 0) {
+                    root[r] = k++;
+                }
+                l[v] = root[r];
+            }
+            int[] s = new int[k];
+            for (int v = 0; v < this.n; v++) {
+                s[l[v]]++;
+            }
+            this.flat = new Flat(l, s);
+        }
+        return this.flat;
+    }
+
+    /**
+        Compute the flat labels now rather than on the first query.
+        Meant for the end of loading, so no query has to.
+    */
+    public void flatten() {
+        this.labels();
+    }
+
+    /**
+        Component of a vertex.
+        @param v Vertex id.
+        @return Component number, from 0 to count() - 1.
+        @throws IllegalArgumentException If there's no vertex v.
+    */
+    public int component(int v) {
+        return component(this.labels(), v);
+    }
+
+    private static int component(Flat f, int v) {
+        if (v < 0 || v >= f.label.length) {
+            throw new IllegalArgumentException("Invalid vertex id");
+        }
+        return f.label[v];
+    }
+
+    /**
+        Whether any path could join two vertices.
+        @param a One vertex id.
+        @param b Other vertex id.
+        @return True if both are in the same component.
+        @throws IllegalArgumentException If either vertex is unknown.
+    */
+    public boolean connected(int a, int b) {
+        Flat f = this.labels();
+        return component(f, a) == component(f, b);
+    }
+
+    /**
+        Number of vertices.
+        @return Vertex count.
+    */
+    public int vertices() {
+        return this.n;
+    }
+
+    /**
+        Number of components.
+        @return Component count.
+    */
+    public int count() {
+        return this.labels().sizes.length;
+    }
+
+    /**
+        Size of a component.
+        @param c Component number.
+        @return Number of vertices in it.
+    */
+    public int size(int c) {
+        return this.labels().sizes[c];
+    }
+
+    /**
+        Component with the most vertices, the lowest numbered
+        one on ties.
+        @return Component number, or -1 if there are no vertices.
+    */
+    public int largest() {
+        int[] s = this.labels().sizes;
+        int best = -1;
+        for (int c = 0; c < s.length; c++) {
+            if (best < 0 || s[c] > s[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    /**
+        Component sizes by powers of two.
+        @return Entry i counts the components with 2^i up to
+            2^(i+1) - 1 vertices.
+    */
+    public int[] histogram() {
+        int[] h = new int[32];
+        int top = 0;
+        for (int size : this.labels().sizes) {
+            int i = 31 - Integer.numberOfLeadingZeros(size);
+            h[i]++;
+            top = Math.max(top, i + 1);
+        }
+        return Arrays.copyOf(h, top);
+    }
+}
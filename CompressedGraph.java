@@ -0,0 +1,359 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import graphs.*;
+
+/**
+    A compressed, read-only implementation of the Graph<V, E> interface.
+
+    Each adjacency list is sorted and stored as a byte sequence:
+    the degree, then the first neighbour as a zig-zag encoded
+    difference from the vertex id, then the gaps between
+    consecutive neighbours minus one, all as variable-length
+    integers with seven bits per byte. Neighbouring ids tend to be
+    close, so most gaps fit in one or two bytes instead of the
+    four an int array needs. Neighbours are decoded on the fly
+    while traversing.
+
+    If every edge has a reverse edge (as in Kevin's bipartite
+    graph) only the outgoing lists are stored and incoming edges
+    are derived from them, which halves the space again.
+
+    Vertex ids are the ids of the graph the copy was made from, and
+    forEachOutNeighbour() gives them in increasing order. Positions
+    and labels work as in any ReadOnlyGraph; vertex elements can be
+    replaced, everything else is fixed.
+
+    @param <V> Type of vertex element
+    @param <E> Type of edge element
+*/
+public final class CompressedGraph<V, E> extends ReadOnlyGraph<V, E> {
+    // adjacency bytes live in pages of at most 2^PAGE_BITS bytes and
+    // no list crosses a page boundary
+    private static final int PAGE_BITS = 30;
+
+    private final Object[] values;
+    private final Lists out;
+    private final Lists in;
+    private final long edgeCount;
+
+    // Encoded adjacency lists for one direction, in id order. at[v]
+    // is the offset of the list of v within its page, or -1 if there
+    // is no vertex v; first[p] is the smallest id stored in page p.
+    private static final class Lists {
+        final byte[][] pages;
+        final int[] first;
+        final int[] at;
+
+        Lists(byte[][] pages, int[] first, int[] at) {
+            this.pages = pages;
+            this.first = first;
+            this.at = at;
+        }
+
+        // Page holding the list of v.
+        byte[] page(int v) {
+            int p = this.first.length - 1;
+            while (this.first[p] > v) {
+                p--;
+            }
+            return this.pages[p];
+        }
+
+        // Decode the list of v, passing each neighbour to f.
+        void decode(int v, IntConsumer f) {
+            byte[] p = this.page(v);
+            int i = this.at[v];
+            int d = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = p[i++];
+                d |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            int w = v;
+            for (int k = 0; k < d; k++) {
+                int x = 0;
+                shift = 0;
+                do {
+                    b = p[i++];
+                    x |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if (k == 0) {
+                    w = v + ((x >>> 1) ^ -(x & 1));
+                } else {
+                    w = w + x + 1;
+                }
+                f.accept(w);
+            }
+        }
+
+        // Number of entries in the list of v.
+        int degree(int v) {
+            byte[] p = this.page(v);
+            int i = this.at[v];
+            int d = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = p[i++];
+                d |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            return d;
+        }
+
+        long bytes() {
+            long b = 4L * this.at.length + 4L * this.first.length;
+            for (int i = 0; i < this.pages.length; i++) {
+                b += this.pages[i].length;
+            }
+            return b;
+        }
+    }
+
+    // Writes lists in id order, starting new pages as needed.
+    private static final class Writer {
+        final ArrayList<byte[]> full = new ArrayList<byte[]>();
+        final ArrayList<Integer> first = new ArrayList<Integer>();
+        final int[] at;
+        byte[] buf = new byte[1 << 16];
+        int len;
+
+        Writer(int n) {
+            this.at = new int[n];
+            Arrays.fill(this.at, -1);
+            this.first.add(0);
+        }
+
+        // Make room for up to k more bytes for the list of v.
+        void reserve(int v, long k) {
+            if (this.len + k > (1L << PAGE_BITS)) {
+                this.full.add(Arrays.copyOf(this.buf, this.len));
+                this.first.add(v);
+                this.buf = new byte[1 << 16];
+                this.len = 0;
+            }
+            while (this.len + k > this.buf.length) {
+                this.buf = Arrays.copyOf(this.buf, (int) Math.min(
+                    1L << PAGE_BITS, 2L * this.buf.length));
+            }
+        }
+
+        void write(int x) {
+            while ((x & ~0x7f) != 0) {
+                this.buf[this.len++] = (byte) ((x & 0x7f) | 0x80);
+                x >>>= 7;
+            }
+            this.buf[this.len++] = (byte) x;
+        }
+
+        // Encode the sorted list of v, a[from] up to a[to - 1].
+        void list(int v, int[] a, int from, int to) {
+            this.reserve(v, 5L * (to - from + 1));
+            this.at[v] = this.len;
+            this.write(to - from);
+            if (to > from) {
+                int first = a[from] - v;
+                this.write((first << 1) ^ (first >> 31));
+                for (int i = from + 1; i < to; i++) {
+                    this.write(a[i] - a[i - 1] - 1);
+                }
+            }
+        }
+
+        Lists finish() {
+            this.full.add(Arrays.copyOf(this.buf, this.len));
+            int[] f = new int[this.first.size()];
+            for (int i = 0; i < f.length; i++) {
+                f[i] = this.first.get(i);
+            }
+            return new Lists(this.full.toArray(new byte[0][]), f, this.at);
+        }
+    }
+
+    private CompressedGraph(Object[] values, Lists out, Lists in,
+        long edgeCount) {
+        this.values = values;
+        this.out = out;
+        this.in = in;
+        this.edgeCount = edgeCount;
+    }
+
+    /**
+        Compress a graph.
+        @param g Graph to copy; later changes to it are not seen.
+        @param <V> Type of vertex element
+        @param <E> Type of edge element
+        @return Compressed copy with the same vertex ids.
+    */
+    public static <V, E> CompressedGraph<V, E> of(Graph<V, E> g) {
+        int n = g.idBound();
+        Object[] values = new Object[n];
+        boolean[] live = new boolean[n];
+        for (Vertex<V> v : g.vertices()) {
+            values[g.id(v)] = v.get();
+            live[g.id(v)] = true;
+        }
+
+        // out-lists in CSR form, just for the duration: count, then
+        // fill; cursor[0] is where the next entry goes
+        int[] offsets = new int[n + 1];
+        int[] cursor = new int[1];
+        IntConsumer count = w -> cursor[0]++;
+        for (int v = 0; v < n; v++) {
+            if (live[v]) {
+                g.forEachOutNeighbour(v, count);
+            }
+            offsets[v + 1] = cursor[0];
+        }
+        int[] targets = new int[cursor[0]];
+        cursor[0] = 0;
+        IntConsumer fill = w -> targets[cursor[0]++] = w;
+        for (int v = 0; v < n; v++) {
+            if (live[v]) {
+                g.forEachOutNeighbour(v, fill);
+            }
+        }
+        return encode(values, live, offsets, targets);
+    }
+
+    /**
+        Compress a snapshot, such as one made by SnapshotBuilder
+        straight from the input, without building a graph first.
+        @param s Snapshot to copy.
+        @param <V> Type of vertex element
+        @param <E> Type of edge element
+        @return Compressed copy with the snapshot's vertex ids.
+    */
+    public static <V, E> CompressedGraph<V, E> of(GraphSnapshot<V> s) {
+        int n = s.size();
+        Object[] values = new Object[n];
+        boolean[] live = new boolean[n];
+        for (int v = 0; v < n; v++) {
+            values[v] = s.get(v);
+            live[v] = true;
+        }
+        // the snapshot's arrays are shared, so sort a copy
+        return encode(values, live, s.offsets, s.targets.clone());
+    }
+
+    // Encode out-lists given in CSR form; targets is sorted in place
+    // and offsets is only read. At most one more int per edge is
+    // needed, for in-lists if the graph isn't symmetric.
+    private static <V, E> CompressedGraph<V, E> encode(Object[] values,
+        boolean[] live, int[] offsets, int[] targets) {
+        int n = live.length;
+        for (int v = 0; v < n; v++) {
+            Arrays.sort(targets, offsets[v], offsets[v + 1]);
+        }
+
+        boolean symmetric = true;
+        for (int v = 0; v < n && symmetric; v++) {
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = targets[k];
+                if (Arrays.binarySearch(targets, offsets[w], offsets[w + 1],
+                    v) < 0) {
+                    symmetric = false;
+                    break;
+                }
+            }
+        }
+
+        Writer ow = new Writer(n);
+        for (int v = 0; v < n; v++) {
+            if (live[v]) {
+                ow.list(v, targets, offsets[v], offsets[v + 1]);
+            }
+        }
+
+        Lists inLists = null;
+        if (!symmetric) {
+            int[] at = new int[n + 1];
+            for (int w : targets) {
+                at[w + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                at[v + 1] += at[v];
+            }
+            int[] in = new int[targets.length];
+            int[] next = Arrays.copyOf(at, n);
+            // visiting sources in order keeps every in-list sorted
+            for (int v = 0; v < n; v++) {
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    in[next[targets[k]]++] = v;
+                }
+            }
+            Writer iw = new Writer(n);
+            for (int v = 0; v < n; v++) {
+                if (live[v]) {
+                    iw.list(v, in, at[v], at[v + 1]);
+                }
+            }
+            inLists = iw.finish();
+        }
+
+        return new CompressedGraph<V, E>(values, ow.finish(), inLists,
+            targets.length);
+    }
+
+    boolean exists(int id) {
+        return this.out.at[id] >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    V element(int id) {
+        return (V) this.values[id];
+    }
+
+    void element(int id, V v) {
+        this.values[id] = v;
+    }
+
+    int outDegree(int id) {
+        return this.out.degree(id);
+    }
+
+    int inDegree(int id) {
+        return (this.in == null ? this.out : this.in).degree(id);
+    }
+
+    void forEachOut(int id, IntConsumer f) {
+        this.out.decode(id, f);
+    }
+
+    void forEachIn(int id, IntConsumer f) {
+        (this.in == null ? this.out : this.in).decode(id, f);
+    }
+
+    /**
+        Upper bound on vertex ids.
+        @return One more than the largest id.
+    */
+    public int idBound() {
+        return this.out.at.length;
+    }
+
+    /**
+        Number of edges.
+        @return Edge count.
+    */
+    public long edgeCount() {
+        return this.edgeCount;
+    }
+
+    /**
+        Space taken by the encoded adjacency lists.
+        @return Bytes, including the per-vertex list positions.
+    */
+    public long bytes() {
+        return this.out.bytes() + (this.in == null ? 0 : this.in.bytes());
+    }
+}
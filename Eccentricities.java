@@ -0,0 +1,263 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import graphs.*;
+
+/**
+    Exact diameter and eccentricity bounds of a connected component.
+
+    The eccentricity of a vertex is its distance to the vertex
+    farthest from it; the diameter is the largest eccentricity.
+    Finding them with a BFS from every vertex is out of the question
+    for millions of vertices, so this uses the bounding technique
+    of Takes and Kosters ("BoundingDiameters"): a BFS from v gives
+    ecc(v) and, by the triangle inequality, for every w
+
+        max(d(v, w), ecc(v) - d(v, w)) <= ecc(w) <= ecc(v) + d(v, w).
+
+    The bounds tighten with every BFS. Vertices whose bounds show
+    they can't change the answer (upper bound at most the best
+    lower bound of the diameter and lower bound at least half its
+    upper bound, or eccentricity known exactly) are dropped from the
+    candidates. The next BFS starts from the candidate with the
+    largest upper bound and the smallest lower bound in turn, ties
+    going to higher degree. It stops once the diameter bounds meet,
+    usually after a handful of searches.
+
+    Every BFS is GraphSnapshot.distances() over the same two
+    arrays. With --compressed the database is loaded through a
+    SnapshotBuilder into a CompressedGraph, never a SparseGraph.
+
+    Usage: java Eccentricities [--compressed] database [--all]
+*/
+public final class Eccentricities {
+    private final GraphSnapshot<?> graph;
+    private final int[] members;
+    private final int[] lower;
+    private final int[] upper;
+    private int diameter;
+    private int from;
+    private int to;
+    private int passes;
+    private final long nanos;
+
+    /**
+        Bound eccentricities in the component of a vertex.
+        @param g Graph to analyse; edges are taken as undirected,
+            so every edge should have a reverse edge.
+        @param start Vertex id whose component to analyse; the
+            first search starts here.
+    */
+    public Eccentricities(GraphSnapshot<?> g, int start) {
+        long begin = System.nanoTime();
+        this.graph = g;
+        int n = g.size();
+        int[] dist = new int[n];
+        int[] queue = new int[n];
+        this.lower = new int[n];
+        this.upper = new int[n];
+
+        int reached = this.search(start, dist, queue);
+        this.members = Arrays.copyOf(queue, reached);
+        Arrays.fill(this.upper, Integer.MAX_VALUE);
+        this.update(start, dist, dist[queue[reached - 1]]);
+
+        // candidates are cand[0 .. live)
+        int[] cand = this.members.clone();
+        int live = cand.length;
+        long high = Integer.MAX_VALUE;
+        boolean pickUpper = true;
+        while (true) {
+            // the diameter is at most the largest upper bound
+            long top = 0;
+            for (int w : this.members) {
+                top = Math.max(top, this.upper[w]);
+            }
+            high = Math.min(high, top);
+
+            // drop candidates that can't matter any more
+            for (int i = 0; i < live; i++) {
+                int w = cand[i];
+                if (this.lower[w] == this.upper[w]
+                    || this.upper[w] <= this.diameter
+                    && 2L * this.lower[w] >= high) {
+                    cand[i--] = cand[--live];
+                }
+            }
+            if (this.diameter >= high || live == 0) {
+                break;
+            }
+
+            int v = cand[0];
+            for (int i = 1; i < live; i++) {
+                int w = cand[i];
+                int c = pickUpper ? Integer.compare(this.upper[w], this.upper[v])
+                    : Integer.compare(this.lower[v], this.lower[w]);
+                if (c > 0 || c == 0 && g.degree(w) > g.degree(v)) {
+                    v = w;
+                }
+            }
+            pickUpper = !pickUpper;
+            reached = this.search(v, dist, queue);
+            this.update(v, dist, dist[queue[reached - 1]]);
+        }
+        this.nanos = System.nanoTime() - begin;
+    }
+
+    // One BFS, remembering the farthest pair seen so far.
+    private int search(int v, int[] dist, int[] queue) {
+        int reached = this.graph.distances(v, dist, queue);
+        this.passes++;
+        int far = queue[reached - 1];
+        if (this.passes == 1 || dist[far] > this.diameter) {
+            this.diameter = dist[far];
+            this.from = v;
+            this.to = far;
+        }
+        return reached;
+    }
+
+    // Tighten every member's bounds with distances from v, whose
+    // eccentricity is e.
+    private void update(int v, int[] dist, int e) {
+        for (int w : this.members) {
+            int d = dist[w];
+            this.lower[w] = Math.max(this.lower[w], Math.max(d, e - d));
+            this.upper[w] = (int) Math.min(this.upper[w], (long) e + d);
+        }
+    }
+
+    /**
+        Diameter of the component.
+        @return Largest distance between two of its vertices.
+    */
+    public int diameter() {
+        return this.diameter;
+    }
+
+    /**
+        One end of a longest shortest path.
+        @return Vertex id the diametral search started from.
+    */
+    public int from() {
+        return this.from;
+    }
+
+    /**
+        Other end of a longest shortest path.
+        @return Vertex id diameter() away from from().
+    */
+    public int to() {
+        return this.to;
+    }
+
+    /**
+        Lower bound on an eccentricity.
+        @param v Vertex id in the component.
+        @return Bound, exact if equal to upper(v).
+    */
+    public int lower(int v) {
+        return this.lower[v];
+    }
+
+    /**
+        Upper bound on an eccentricity.
+        @param v Vertex id in the component.
+        @return Bound, exact if equal to lower(v).
+    */
+    public int upper(int v) {
+        return this.upper[v];
+    }
+
+    /**
+        Vertices in the component.
+        @return Vertex ids in BFS order from the start vertex.
+    */
+    public int[] members() {
+        return this.members.clone();
+    }
+
+    /**
+        Breadth-first searches it took.
+        @return Count, the first one included.
+    */
+    public int passes() {
+        return this.passes;
+    }
+
+    /**
+        Time it took.
+        @return Nanoseconds.
+    */
+    public long nanos() {
+        return this.nanos;
+    }
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws IOException If database file cannot be read properly.
+    */
+    public static void main(String[] args) throws IOException {
+        boolean compressed = args.length > 0
+            && args[0].equals("--compressed");
+        int first = compressed ? 1 : 0;
+        if (args.length - first < 1 || args.length - first > 2
+            || args.length - first == 2 && !args[first + 1].equals("--all")) {
+            System.out.printf("Usage: java Eccentricities [--compressed]"
+                + " database [--all]\n");
+            System.exit(1);
+        }
+        Graph<String, String> g = Kevin.load(args[first], compressed);
+        GraphSnapshot<String> s = GraphSnapshot.of(g);
+        Components c = Kevin.components();
+
+        // start from the highest degree vertex of the largest component
+        int big = c.largest();
+        int start = -1;
+        for (int i = 0; i < s.size(); i++) {
+            if (c.component(g.id(s.position(i))) == big
+                && (start < 0 || s.degree(i) > s.degree(start))) {
+                start = i;
+            }
+        }
+        if (start < 0) {
+            System.out.printf("Error: Empty database.\n");
+            System.exit(1);
+        }
+
+        Eccentricities e = new Eccentricities(s, start);
+        int[] members = e.members();
+        int exact = 0;
+        for (int v : members) {
+            if (e.lower(v) == e.upper(v)) {
+                exact++;
+            }
+        }
+        System.out.printf("largest component: %d of %d vertices\n",
+            members.length, s.size());
+        System.out.printf("diameter: %d hops, from %s to %s\n", e.diameter(),
+            s.get(e.from()), s.get(e.to()));
+        // a path runs from its target back to the root of the tree,
+        // so root the tree at the far end to print it from the start
+        List<?> path = s.elements(GraphSnapshot.path(s.parents(e.to()),
+            e.from()));
+        for (Object name : path) {
+            System.out.printf("    %s\n", name);
+        }
+        System.out.printf("%d BFS passes for %d vertices (%.4f%%) in %d ms,"
+            + " %d eccentricities exact\n", e.passes(), members.length,
+            100.0 * e.passes() / members.length, e.nanos() / 1000000, exact);
+        if (args.length - first == 2) {
+            for (int v : members) {
+                System.out.printf("%s\t%d\t%d\n", s.get(v), e.lower(v),
+                    e.upper(v));
+            }
+        }
+    }
+}
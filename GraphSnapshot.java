@@ -0,0 +1,471 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import graphs.*;
+
+/**
+    Read-only array snapshot of a Graph<V, E>.
+
+    Vertices are renumbered 0..n-1 and adjacency is kept in
+    compressed sparse row form: the out-neighbours of vertex i
+    are targets[offsets[i]] up to targets[offsets[i + 1] - 1].
+    Anything that has to run many searches over the same graph
+    (indexes, caches, analytics) works on this instead of going
+    through positions, labels and iterators every time.
+
+    By default ids follow the order of the graph's vertices(),
+    which for Kevin is the order of the input file. That scatters
+    the neighbours of a vertex all over the arrays, so a snapshot
+    can instead be renumbered (see Order) to put vertices that are
+    visited together close together in memory. Adjacency lists of
+    a renumbered snapshot are sorted by id.
+
+    A snapshot can also be built straight from arrays (see
+    SnapshotBuilder); its positions then belong to no graph and
+    only serve to look up elements and ids, until over() ties it
+    to a graph built from it, such as a CompressedGraph.
+
+    @param <V> Type of vertex element
+*/
+public final class GraphSnapshot<V> {
+    /**
+        How vertices are numbered in a snapshot.
+    */
+    public enum Order {
+        /** Order of the graph's vertices(). */
+        NONE,
+        /** By decreasing degree, so the hubs share a few cache lines. */
+        DEGREE,
+        /** Cuthill-McKee: BFS order, lower degree neighbours first. */
+        BFS
+    }
+
+    // adjacency in CSR form, package-private so that the search
+    // code next door can walk it without accessor calls
+    final int[] offsets;
+    final int[] targets;
+
+    private final Vertex<V>[] positions;
+
+    // graph the snapshot was taken of (null if it was built straight
+    // from arrays), and snapshot id by graph or element id
+    private final Graph<V, ?> source;
+    private final int[] ids;
+
+    // Position of an element in a snapshot built without a graph;
+    // id is the element's index in the list it was built from.
+    private static final class Element<V> implements Vertex<V> {
+        final int id;
+        private final V value;
+
+        Element(int id, V value) {
+            this.id = id;
+            this.value = value;
+        }
+
+        public V get() {
+            return this.value;
+        }
+
+        public void put(V v) {
+            throw new UnsupportedOperationException("Read-only snapshot");
+        }
+    }
+
+    private GraphSnapshot(Graph<V, ?> source, Vertex<V>[] positions, int[] ids,
+        int[] offsets, int[] targets) {
+        this.source = source;
+        this.positions = positions;
+        this.ids = ids;
+        this.offsets = offsets;
+        this.targets = targets;
+    }
+
+    /**
+        Take a snapshot of a graph.
+        @param g Graph to copy; later changes to it are not seen.
+        @param <V> Type of vertex element
+        @param <E> Type of edge element
+        @return Snapshot holding the current vertices and edges.
+    */
+    public static <V, E> GraphSnapshot<V> of(Graph<V, E> g) {
+        return of(g, Order.NONE);
+    }
+
+    /**
+        Take a renumbered snapshot of a graph.
+        @param g Graph to copy; later changes to it are not seen.
+        @param how How to number the vertices.
+        @param <V> Type of vertex element
+        @param <E> Type of edge element
+        @return Snapshot holding the current vertices and edges.
+    */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public static <V, E> GraphSnapshot<V> of(Graph<V, E> g, Order how) {
+        int[] ids = new int[g.idBound()];
+        Arrays.fill(ids, -1);
+        ArrayList<Vertex<V>> order = new ArrayList<Vertex<V>>();
+        for (Vertex<V> v : g.vertices()) {
+            ids[g.id(v)] = order.size();
+            order.add(v);
+        }
+        int n = order.size();
+
+        // count degrees, then fill in targets; cursor[0] is where the
+        // next target goes so one callback object serves all vertices
+        int[] offsets = new int[n + 1];
+        int[] cursor = new int[1];
+        IntConsumer count = w -> cursor[0]++;
+        for (int i = 0; i < n; i++) {
+            g.forEachOutNeighbour(g.id(order.get(i)), count);
+            offsets[i + 1] = cursor[0];
+        }
+        int[] targets = new int[offsets[n]];
+        cursor[0] = 0;
+        IntConsumer fill = w -> targets[cursor[0]++] = ids[w];
+        for (int i = 0; i < n; i++) {
+            g.forEachOutNeighbour(g.id(order.get(i)), fill);
+        }
+        Vertex<V>[] positions = order.toArray(new Vertex[n]);
+        return new GraphSnapshot<V>(g, positions, ids, offsets, targets)
+            .reorder(how);
+    }
+
+    /**
+        Snapshot of adjacency arrays built without a graph.
+        @param elements Element of every vertex, by id.
+        @param offsets Start of every adjacency list in targets,
+            plus the total at the end; taken over, not copied.
+        @param targets Neighbour ids; taken over, not copied.
+        @param <V> Type of vertex element
+        @return Snapshot whose positions belong to no graph.
+        @throws IllegalArgumentException If the arrays don't fit
+            the number of elements.
+    */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static <V> GraphSnapshot<V> of(List<V> elements, int[] offsets,
+        int[] targets) {
+        int n = elements.size();
+        if (offsets.length != n + 1 || offsets[n] != targets.length) {
+            throw new IllegalArgumentException("Invalid adjacency arrays");
+        }
+        Vertex<V>[] positions = new Vertex[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = new Element<V>(i, elements.get(i));
+            ids[i] = i;
+        }
+        return new GraphSnapshot<V>(null, positions, ids, offsets, targets);
+    }
+
+    /**
+        Same snapshot with positions in a graph that has the ids
+        this one was built with, sharing the adjacency arrays.
+        @param g Graph whose vertex i is element i of the list
+            this snapshot was built from.
+        @return Snapshot taken of g as far as ids go.
+        @throws IllegalArgumentException If the snapshot already
+            belongs to a graph or g has other ids.
+    */
+    public GraphSnapshot<V> over(Graph<V, ?> g)
+        throws IllegalArgumentException {
+        if (this.source != null || g.idBound() != this.ids.length) {
+            throw new IllegalArgumentException("Invalid graph");
+        }
+        Vertex<V>[] positions = this.positions.clone();
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = g.vertex(((Element<V>) positions[i]).id);
+        }
+        return new GraphSnapshot<V>(g, positions, this.ids, this.offsets,
+            this.targets);
+    }
+
+    /**
+        Renumber this snapshot.
+        @param how How to number the vertices.
+        @return Snapshot with the same vertices and edges.
+    */
+    public GraphSnapshot<V> reorder(Order how) {
+        switch (how) {
+            case DEGREE:
+                return this.renumber(this.degreeOrder());
+            case BFS:
+                return this.renumber(this.cuthillMcKee());
+            default:
+                return this;
+        }
+    }
+
+    // Vertex ids sorted by key, ties broken by id.
+    private static int[] sortBy(long[] key, int n) {
+        long[] packed = new long[n];
+        for (int i = 0; i < n; i++) {
+            packed[i] = (key[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++) {
+            sorted[i] = (int) packed[i];
+        }
+        return sorted;
+    }
+
+    // New id for every old id, highest degree first.
+    private int[] degreeOrder() {
+        int n = this.size();
+        long[] key = new long[n];
+        for (int i = 0; i < n; i++) {
+            key[i] = Integer.MAX_VALUE - this.degree(i);
+        }
+        int[] sorted = sortBy(key, n);
+        int[] perm = new int[n];
+        for (int i = 0; i < n; i++) {
+            perm[sorted[i]] = i;
+        }
+        return perm;
+    }
+
+    // New id for every old id in Cuthill-McKee order: each component
+    // is searched from its lowest degree vertex and the unvisited
+    // neighbours of a vertex are numbered by increasing degree.
+    private int[] cuthillMcKee() {
+        int n = this.size();
+        long[] key = new long[n];
+        for (int i = 0; i < n; i++) {
+            key[i] = this.degree(i);
+        }
+        int[] starts = sortBy(key, n);
+        int[] perm = new int[n];
+        int[] queue = new int[n];
+        long[] batch = new long[16];
+        Arrays.fill(perm, -1);
+        int next = 0;
+        for (int s : starts) {
+            if (perm[s] >= 0) {
+                continue;
+            }
+            int head = next;
+            perm[s] = next;
+            queue[next++] = s;
+            while (head < next) {
+                int u = queue[head++];
+                int b = 0;
+                for (int k = this.offsets[u]; k < this.offsets[u + 1]; k++) {
+                    int w = this.targets[k];
+                    if (perm[w] < 0) {
+                        // mark now so duplicates don't sneak in twice
+                        perm[w] = Integer.MAX_VALUE;
+                        if (b == batch.length) {
+                            batch = Arrays.copyOf(batch, 2 * b);
+                        }
+                        batch[b++] = ((long) this.degree(w) << 32) | w;
+                    }
+                }
+                Arrays.sort(batch, 0, b);
+                for (int i = 0; i < b; i++) {
+                    int w = (int) batch[i];
+                    perm[w] = next;
+                    queue[next++] = w;
+                }
+            }
+        }
+        return perm;
+    }
+
+    // Copy of this snapshot where old id i becomes perm[i].
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private GraphSnapshot<V> renumber(int[] perm) {
+        int n = this.size();
+        Vertex<V>[] positions = new Vertex[n];
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            positions[perm[i]] = this.positions[i];
+            offsets[perm[i] + 1] = this.degree(i);
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] targets = new int[this.targets.length];
+        for (int i = 0; i < n; i++) {
+            int k = offsets[perm[i]];
+            for (int j = this.offsets[i]; j < this.offsets[i + 1]; j++) {
+                targets[k++] = perm[this.targets[j]];
+            }
+            Arrays.sort(targets, offsets[perm[i]], k);
+        }
+        int[] ids = new int[this.ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = this.ids[i] < 0 ? -1 : perm[this.ids[i]];
+        }
+        return new GraphSnapshot<V>(this.source, positions, ids, offsets,
+            targets);
+    }
+
+    /**
+        Number of vertices.
+        @return Vertex count.
+    */
+    public int size() {
+        return this.positions.length;
+    }
+
+    /**
+        Number of edges.
+        @return Edge count.
+    */
+    public int edgeCount() {
+        return this.targets.length;
+    }
+
+    /**
+        Out-degree of vertex.
+        @param i Vertex id.
+        @return Number of outgoing edges.
+    */
+    public int degree(int i) {
+        return this.offsets[i + 1] - this.offsets[i];
+    }
+
+    /**
+        Id of vertex position.
+        @param v Vertex position from the original graph, or
+            from this snapshot if it was built without one.
+        @return Id in this snapshot.
+        @throws IllegalArgumentException If the vertex was not
+            in the graph when the snapshot was taken.
+    */
+    public int id(Vertex<V> v) throws IllegalArgumentException {
+        int i;
+        if (this.source != null) {
+            i = this.source.id(v);
+        } else if (v instanceof Element) {
+            i = ((Element<V>) v).id;
+            if (i >= this.ids.length || this.position(this.ids[i]) != v) {
+                throw new IllegalArgumentException("Invalid vertex position");
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid vertex position");
+        }
+        if (i >= this.ids.length || this.ids[i] < 0) {
+            throw new IllegalArgumentException("Invalid vertex position");
+        }
+        return this.ids[i];
+    }
+
+    /**
+        Vertex position for id.
+        @param i Vertex id.
+        @return Vertex position in the original graph.
+    */
+    public Vertex<V> position(int i) {
+        return this.positions[i];
+    }
+
+    /**
+        Element for id.
+        @param i Vertex id.
+        @return Element stored at the vertex.
+    */
+    public V get(int i) {
+        return this.positions[i].get();
+    }
+
+    /**
+        Breadth-first search filling in distances.
+        @param root Vertex id to start from.
+        @param dist Array of at least size() entries; on return
+            holds the number of hops from root, or -1.
+        @param queue Scratch array of at least size() entries.
+        @return Number of vertices reached, root included.
+    */
+    public int distances(int root, int[] dist, int[] queue) {
+        Arrays.fill(dist, 0, this.size(), -1);
+        int head = 0;
+        int tail = 0;
+        dist[root] = 0;
+        queue[tail++] = root;
+        while (head < tail) {
+            int u = queue[head++];
+            int du = dist[u] + 1;
+            for (int k = this.offsets[u]; k < this.offsets[u + 1]; k++) {
+                int w = this.targets[k];
+                if (dist[w] < 0) {
+                    dist[w] = du;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+        Breadth-first search tree.
+        @param root Vertex id to start from.
+        @return Parent id of every vertex; root is its own parent
+            and vertices that can't be reached have -1.
+    */
+    public int[] parents(int root) {
+        int n = this.size();
+        int[] parent = new int[n];
+        int[] queue = new int[n];
+        Arrays.fill(parent, -1);
+        int head = 0;
+        int tail = 0;
+        parent[root] = root;
+        queue[tail++] = root;
+        while (head < tail) {
+            int u = queue[head++];
+            for (int k = this.offsets[u]; k < this.offsets[u + 1]; k++) {
+                int w = this.targets[k];
+                if (parent[w] < 0) {
+                    parent[w] = u;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return parent;
+    }
+
+    /**
+        Path out of a breadth-first search tree.
+        @param parent Tree as returned by parents().
+        @param target Vertex id to end at.
+        @return Vertex ids from target back to the root, or null
+            if the target wasn't reached.
+    */
+    public static int[] path(int[] parent, int target) {
+        if (parent[target] < 0) {
+            return null;
+        }
+        int len = 1;
+        for (int v = target; parent[v] != v; v = parent[v]) {
+            len++;
+        }
+        int[] p = new int[len];
+        int v = target;
+        for (int i = 0; i < len; i++) {
+            p[i] = v;
+            v = parent[v];
+        }
+        return p;
+    }
+
+    /**
+        Elements along a path given as ids.
+        @param path Vertex ids in order.
+        @return Elements in the same order.
+    */
+    public List<V> elements(int[] path) {
+        List<V> l = new ArrayList<V>(path.length);
+        for (int i = 0; i < path.length; i++) {
+            l.add(this.get(path[i]));
+        }
+        return l;
+    }
+}
@@ -0,0 +1,270 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+import graphs.*;
+
+/**
+    Co-stars of the busiest actors, precomputed.
+
+    In the bipartite graph an actor reaches its co-stars through a
+    movie, so a search expanding an actor with thousands of credits
+    walks thousands of casts, meeting the same regulars again and
+    again. For the N actors with the most credits this keeps the
+    deduplicated set of co-stars instead, each with one movie they
+    share, so BoundedSearch can go from such a hub straight to its
+    co-stars two levels down and still print the movie in between.
+
+    Each hub's list is sorted by co-star id and stored as pairs of
+    variable-length integers with seven bits per byte: the gap to
+    the previous co-star minus one (the id itself for the first),
+    then the movie. Gaps between co-stars of a busy actor are small, so most
+    of them fit in a byte or two.
+
+    Movies excluded when the projection is built are never used; a
+    search must skip exactly the same movies for the shortcut to
+    give the same answers, see excludes().
+*/
+public final class HubProjection {
+    /** Receives the co-stars of a hub. */
+    public interface Visitor {
+        /**
+            One co-star.
+            @param costar Vertex id of the co-star.
+            @param via Vertex id of a movie both appear in.
+        */
+        void accept(int costar, int via);
+    }
+
+    // hub vertex ids in ascending order, and the same as a set
+    private final int[] hubs;
+    private final BitSet isHub;
+    // encoded co-star lists and their lengths, by position in hubs
+    private final byte[][] lists;
+    private final int[] counts;
+    private final BitSet excludes;
+
+    private HubProjection(int[] hubs, byte[][] lists, int[] counts,
+        BitSet excludes) {
+        this.hubs = hubs;
+        this.lists = lists;
+        this.counts = counts;
+        this.excludes = excludes;
+        this.isHub = new BitSet();
+        for (int h : hubs) {
+            this.isHub.set(h);
+        }
+    }
+
+    /**
+        Project the co-stars of the actors with the most credits.
+        @param g Bipartite graph of movies and actors with an edge
+            each way for every credit.
+        @param actor Which vertex ids are actors.
+        @param n How many hubs to keep; fewer if there aren't as
+            many actors.
+        @param excludes Movie ids to leave out, or null for none.
+        @param <V> Type of vertex element
+        @param <E> Type of edge element
+        @return The projection.
+        @throws IllegalArgumentException If n is negative.
+    */
+    public static <V, E> HubProjection of(Graph<V, E> g, IntPredicate actor,
+        int n, BitSet excludes) {
+        if (n < 0) {
+            throw new IllegalArgumentException("Negative hub count");
+        }
+        int bound = g.idBound();
+
+        // degree in the high half, id in the low: the last n after
+        // sorting are the hubs
+        long[] keys = new long[bound];
+        int[] degree = new int[1];
+        IntConsumer count = w -> degree[0]++;
+        int k = 0;
+        for (Vertex<V> v : g.vertices()) {
+            int id = g.id(v);
+            if (actor.test(id)) {
+                degree[0] = 0;
+                g.forEachOutNeighbour(id, count);
+                keys[k++] = (long) degree[0] << 32 | id;
+            }
+        }
+        keys = Arrays.copyOf(keys, k);
+        Arrays.sort(keys);
+        int[] hubs = new int[Math.min(n, k)];
+        for (int i = 0; i < hubs.length; i++) {
+            hubs[i] = (int) keys[k - 1 - i];
+        }
+        Arrays.sort(hubs);
+
+        // hub[0] is the hub at hand and hub[1] its position plus one;
+        // seen[a] == hub[1] once a is known as its co-star
+        int[] seen = new int[bound];
+        int[] via = new int[bound];
+        int[][] list = {new int[64]};
+        int[] len = new int[1];
+        int[] movie = new int[1];
+        int[] hub = new int[2];
+        IntConsumer costar = a -> {
+            if (a != hub[0] && seen[a] != hub[1]) {
+                seen[a] = hub[1];
+                via[a] = movie[0];
+                if (len[0] == list[0].length) {
+                    list[0] = Arrays.copyOf(list[0], 2 * len[0]);
+                }
+                list[0][len[0]++] = a;
+            }
+        };
+        int[][] movies = {new int[64]};
+        int[] credits = new int[1];
+        IntConsumer credit = m -> {
+            if (excludes == null || !excludes.get(m)) {
+                if (credits[0] == movies[0].length) {
+                    movies[0] = Arrays.copyOf(movies[0], 2 * credits[0]);
+                }
+                movies[0][credits[0]++] = m;
+            }
+        };
+
+        byte[][] lists = new byte[hubs.length][];
+        int[] counts = new int[hubs.length];
+        for (int i = 0; i < hubs.length; i++) {
+            hub[0] = hubs[i];
+            hub[1] = i + 1;
+            len[0] = 0;
+            credits[0] = 0;
+            g.forEachOutNeighbour(hubs[i], credit);
+            for (int j = 0; j < credits[0]; j++) {
+                movie[0] = movies[0][j];
+                g.forEachOutNeighbour(movie[0], costar);
+            }
+            int[] a = Arrays.copyOf(list[0], len[0]);
+            Arrays.sort(a);
+            lists[i] = encode(a, via);
+            counts[i] = a.length;
+        }
+        return new HubProjection(hubs, lists, counts, excludes);
+    }
+
+    // Encode sorted co-stars with their movies.
+    private static byte[] encode(int[] a, int[] via) {
+        byte[] buf = new byte[10 * a.length];
+        int len = 0;
+        int prev = -1;
+        for (int w : a) {
+            len = write(buf, len, w - prev - 1);
+            len = write(buf, len, via[w]);
+            prev = w;
+        }
+        return Arrays.copyOf(buf, len);
+    }
+
+    private static int write(byte[] buf, int len, int x) {
+        while ((x & ~0x7f) != 0) {
+            buf[len++] = (byte) ((x & 0x7f) | 0x80);
+            x >>>= 7;
+        }
+        buf[len++] = (byte) x;
+        return len;
+    }
+
+    /**
+        Whether a vertex is a hub.
+        @param v Vertex id.
+        @return True if its co-stars are projected.
+    */
+    public boolean isHub(int v) {
+        return v >= 0 && this.isHub.get(v);
+    }
+
+    /**
+        Number of co-stars of a hub.
+        @param v Vertex id.
+        @return Distinct co-stars, or -1 if v isn't a hub.
+    */
+    public int costars(int v) {
+        int i = Arrays.binarySearch(this.hubs, v);
+        return i < 0 ? -1 : this.counts[i];
+    }
+
+    /**
+        Go through the co-stars of a hub in id order.
+        @param v Vertex id of the hub.
+        @param f Gets each co-star and a movie they share.
+        @throws IllegalArgumentException If v isn't a hub.
+    */
+    public void forEachCostar(int v, Visitor f) {
+        int i = Arrays.binarySearch(this.hubs, v);
+        if (i < 0) {
+            throw new IllegalArgumentException("Not a hub");
+        }
+        byte[] p = this.lists[i];
+        int w = -1;
+        int at = 0;
+        for (int k = this.counts[i]; k > 0; k--) {
+            int x = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = p[at++];
+                x |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            w += x + 1;
+            int m = 0;
+            shift = 0;
+            do {
+                b = p[at++];
+                m |= (b & 0x7f) << shift;
+                shift += 7;
+            } while (b < 0);
+            f.accept(w, m);
+        }
+    }
+
+    /**
+        Movies left out when the projection was built.
+        @return The set passed to of(), or null for none.
+    */
+    public BitSet excludes() {
+        return this.excludes;
+    }
+
+    /**
+        Number of hubs.
+        @return Hub count.
+    */
+    public int size() {
+        return this.hubs.length;
+    }
+
+    /**
+        Total number of co-star entries.
+        @return Sum over all hubs.
+    */
+    public long entries() {
+        long e = 0;
+        for (int c : this.counts) {
+            e += c;
+        }
+        return e;
+    }
+
+    /**
+        Space taken by the co-star lists.
+        @return Bytes, roughly.
+    */
+    public long bytes() {
+        long b = 8L * this.hubs.length + this.isHub.size() / 8;
+        for (byte[] p : this.lists) {
+            b += p.length;
+        }
+        return b;
+    }
+}
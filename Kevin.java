@@ -4,15 +4,16 @@
 */
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Queue;
-import java.util.LinkedList;
+import java.util.Random;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.FileReader;
-import java.io.BufferedReader;
 import graphs.*;
 
 /**
@@ -33,6 +34,55 @@ public final class Kevin {
     private static Vertex<String> actor = null;
     private static Vertex<String> bacon = null;
 
+    // Ids of all vertices created from the input, by name. Only used
+    // to look up query endpoints, never during the search itself, and
+    // null once the graph is off-heap, which keeps its own by name.
+    private static Map<String, Integer> vertices = new HashMap<>();
+
+    // Vertex kinds in an off-heap copy of the graph.
+    private static final int MOVIE = 1;
+    private static final int ACTOR = 2;
+
+    // Release year of every movie by vertex id: 0 for actors and
+    // UNKNOWN_YEAR for movies whose title doesn't carry one. Kept as
+    // a column so filters never have to parse names again.
+    static final short UNKNOWN_YEAR = -1;
+    private static short[] years = new short[0];
+
+    // Connected components by vertex id, kept up to date while the
+    // input is read.
+    private static Components components = new Components();
+
+    // Movies the Bacon search must not go through, or null for none.
+    private static BitSet excluded = null;
+
+    // Limits for solveBacon: hops (two per degree of separation),
+    // vertices expanded and time taken.
+    private static long maxDepth = BoundedSearch.UNLIMITED;
+    private static long maxVisited = BoundedSearch.UNLIMITED;
+    private static long maxNanos = BoundedSearch.UNLIMITED;
+
+    // Budget for cached BFS trees used by solve(); a tree costs
+    // four bytes per vertex.
+    private static final long CACHE_BYTES = 256L << 20;
+
+    // Array snapshot of the graph and the trees computed on it, built
+    // on first use once the input has been read; a compressed graph
+    // keeps the snapshot it was encoded from instead.
+    private static GraphSnapshot<String> snapshot = null;
+    private static BfsTreeCache trees = null;
+    private static GraphSnapshot.Order order = GraphSnapshot.Order.NONE;
+
+    // How many names to suggest when one can't be found.
+    private static final int SUGGESTIONS = 5;
+
+    // Trigram index over actor names, built on first use.
+    private static NameIndex names = null;
+
+    // Co-stars of the busiest actors for solveBacon to jump to, or
+    // null if it should always go through the movies.
+    private static HubProjection hubs = null;
+
     // Shut up checkstyle.
     private Kevin() {}
 
@@ -48,83 +98,682 @@ public final class Kevin {
     //
     // This function also sets up the "actor" and "bacon" globals
     // that will be used to direct the breadth-first-search.
-    private static void readInput(String filename, String who)
-        throws FileNotFoundException, IOException {
-        // keep track of all vertices created so far by name
-        Map<String, Vertex<String>> vertices = new HashMap<>();
-
-        // how we read the input
-        BufferedReader reader = new BufferedReader(new FileReader(
-            new File(filename)));
-        String line;
-
-        while ((line = reader.readLine()) != null) {
-            String[] data = line.split("/");
-
-            // find or create vertex for the movie
-            Vertex<String> m = vertices.get(data[0]);
-            if (m == null) {
-                m = graph.insert(data[0]);
-                vertices.put(data[0], m);
-            }
-
-            for (int i = 1; i < data.length; i++) {
-                // find or create vertex for the actor
-                Vertex<String> a = vertices.get(data[i]);
-                if (a == null) {
-                    a = graph.insert(data[i]);
-                    vertices.put(data[i], a);
+    //
+    // With compressed set there's never a SparseGraph: credits go to
+    // a SnapshotBuilder, and the graph is a compressed copy of the
+    // snapshot it builds, which takes far less memory on the way.
+    // The snapshot itself is kept for the BFS trees, so those don't
+    // need a second copy of the adjacency decoded from the graph.
+    private static void readInput(String filename, String who,
+        boolean compressed) throws FileNotFoundException, IOException {
+        String[] data;
+        SnapshotBuilder<String> builder = compressed
+            ? new SnapshotBuilder<String>() : null;
+
+        // counters for the statistics; cheap enough to always keep
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        long start = System.nanoTime();
+        long lines = 0;
+        long credits = 0;
+
+        // how we read the input: plain or gzipped, parsed ahead of
+        // us on other threads, which close() stops if reading fails
+        try (CastReader reader = new CastReader(filename)) {
+            while ((data = reader.next()) != null) {
+                lines++;
+
+                // find or create vertex for the movie
+                int m = vertex(builder, data[0]);
+                if (m >= years.length) {
+                    years = Arrays.copyOf(years, Math.max(m + 1,
+                        2 * years.length));
                 }
+                years[m] = year(data[0]);
+                components.add(m);
+
+                for (int i = 1; i < data.length; i++) {
+                    // find or create vertex for the actor
+                    int a = vertex(builder, data[i]);
 
-                // double-check for special actors
-                if (a.get().equals("Bacon, Kevin")) {
-                    bacon = a;
+                    // create two edges, from and to the movie
+                    if (builder != null) {
+                        builder.credit(m, a);
+                    } else {
+                        graph.insert(graph.vertex(m), graph.vertex(a),
+                            "features");
+                        graph.insert(graph.vertex(a), graph.vertex(m),
+                            "acts in");
+                    }
+                    components.union(m, a);
+                    credits++;
                 }
-                if (a.get().equals(who)) {
-                    actor = a;
+            }
+        }
+
+        if (builder != null) {
+            GraphSnapshot<String> built = builder.build();
+            graph = CompressedGraph.of(built);
+            vertices = builder.ids();
+            synchronized (Kevin.class) {
+                snapshot = built.reorder(order).over(graph);
+            }
+        }
+        // label components now so queries never have to
+        components.flatten();
+
+        // the special actors; movies of the same name don't count
+        bacon = actorNamed("Bacon, Kevin");
+        actor = actorNamed(who);
+
+        long nanos = System.nanoTime() - start;
+        SearchStats.loaded(lines, credits, vertices.size(), 2 * credits, nanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.file = filename;
+            event.lines = lines;
+            event.credits = credits;
+            event.vertices = vertices.size();
+            event.edges = 2 * credits;
+            event.creditsPerSecond = nanos == 0 ? 0.0 : credits * 1e9 / nanos;
+            event.commit();
+        }
+    }
+
+    // Id of the vertex for a name, created if new: in the builder if
+    // there is one, in the graph otherwise.
+    private static int vertex(SnapshotBuilder<String> b, String name) {
+        if (b != null) {
+            return b.vertex(name);
+        }
+        Integer id = vertices.get(name);
+        if (id == null) {
+            id = graph.id(graph.insert(name));
+            vertices.put(name, id);
+        }
+        return id;
+    }
+
+    // Whether a vertex is an actor: movies are the ones with a year
+    // column entry, even if it's UNKNOWN_YEAR. Off-heap the graph
+    // knows the kind of every vertex itself.
+    private static boolean isActor(int id) {
+        if (graph instanceof OffHeapGraph) {
+            return ((OffHeapGraph) graph).kind(id) == ACTOR;
+        }
+        return id >= years.length || years[id] == 0;
+    }
+
+    // Id of the vertex with a name, or -1 if there is none.
+    private static int idOf(String name) {
+        if (graph instanceof OffHeapGraph) {
+            return ((OffHeapGraph) graph).find(name);
+        }
+        Integer id = vertices.get(name);
+        return id == null ? -1 : id;
+    }
+
+    // Vertex of an actor by name, or null if there is no such actor.
+    private static Vertex<String> actorNamed(String name) {
+        int id = idOf(name);
+        return id < 0 || !isActor(id) ? null : graph.vertex(id);
+    }
+
+    // Year in a movie title such as "Footloose (1984)" or
+    // "Hamlet (1990/I)", or UNKNOWN_YEAR if there is none. A year 0
+    // is unknown too, since 0 in the column marks an actor.
+    static short year(String title) {
+        for (int i = title.lastIndexOf('('); i >= 0;
+            i = title.lastIndexOf('(', i - 1)) {
+            if (i + 4 < title.length()) {
+                int y = 0;
+                int k = i + 1;
+                while (k < i + 5 && Character.isDigit(title.charAt(k))) {
+                    y = 10 * y + title.charAt(k++) - '0';
+                }
+                if (k == i + 5) {
+                    return y == 0 ? UNKNOWN_YEAR : (short) y;
                 }
+            }
+            if (i == 0) {
+                break;
+            }
+        }
+        return UNKNOWN_YEAR;
+    }
+
+    /**
+        Movies outside a range of years.
+        @param from First year allowed.
+        @param to Last year allowed.
+        @return Set of vertex ids of movies that weren't released
+            in the range or whose year is unknown.
+    */
+    static BitSet excludeYears(int from, int to) {
+        BitSet out = new BitSet(years.length);
+        for (int i = 0; i < years.length; i++) {
+            short y = years[i];
+            if (y != 0 && (y == UNKNOWN_YEAR || y < from || y > to)) {
+                out.set(i);
+            }
+        }
+        return out;
+    }
 
-                // create two edges, from and to the movie
-                graph.insert(m, a, "features");
-                graph.insert(a, m, "acts in");
+    // Movies outside a range such as "1980-1999", "-1970" or "2000-";
+    // a single year "1984" means just that year.
+    static BitSet excludeYears(String range) {
+        int dash = range.indexOf('-');
+        try {
+            if (dash < 0) {
+                int y = Integer.parseInt(range);
+                return excludeYears(y, y);
             }
+            String from = range.substring(0, dash).trim();
+            String to = range.substring(dash + 1).trim();
+            return excludeYears(
+                from.isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(from),
+                to.isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(to));
+        } catch (NumberFormatException e) {
+            System.out.printf("Error: Bad year range %s.\n", range);
+            System.exit(1);
+            return null;
+        }
+    }
+
+    /**
+        Read a database into a fresh graph.
+        @param filename Database to read.
+        @return Graph of movies and actors.
+        @throws FileNotFoundException If database file cannot be opened.
+        @throws IOException If database file cannot be read properly.
+    */
+    static Graph<String, String> load(String filename)
+        throws FileNotFoundException, IOException {
+        return load(filename, false);
+    }
+
+    /**
+        Read a database into a fresh graph, possibly a compressed
+        one built from a snapshot without a SparseGraph in between.
+        Anything worked out from a graph read earlier, such as cached
+        trees or hub projections, is dropped.
+        @param filename Database to read.
+        @param compressed Whether to build a CompressedGraph.
+        @return Graph of movies and actors.
+        @throws FileNotFoundException If database file cannot be opened.
+        @throws IOException If database file cannot be read properly.
+    */
+    static Graph<String, String> load(String filename, boolean compressed)
+        throws FileNotFoundException, IOException {
+        graph = new SparseGraph<String, String>();
+        vertices = new HashMap<>();
+        years = new short[0];
+        components = new Components();
+        // everything built from the previous graph goes with it
+        actor = null;
+        bacon = null;
+        excluded = null;
+        hubs = null;
+        synchronized (Kevin.class) {
+            names = null;
+            snapshot = null;
+            trees = null;
         }
+        readInput(filename, "Bacon, Kevin", compressed);
+        return graph;
+    }
+
+    /**
+        Look up a vertex by name.
+        @param name Movie or actor to find.
+        @return Vertex position, or null if there is none.
+    */
+    static Vertex<String> find(String name) {
+        int id = idOf(name);
+        return id < 0 ? null : graph.vertex(id);
     }
 
     // Perform a breadth-first search (BFS) starting from Kevin Bacon
-    // and stopping when (a) the graph is exhausted or (b) we found
-    // the actor we're looking for. Then print the path from the actor
-    // back to Kevin Bacon and exit the program. Since we're using BFS
-    // we can be sure that the resulting path is among the shortest ones.
-    private static void solveBacon() {
-        Vertex<String> current = bacon;
-        ArrayList<Edge<String>> outgo;
-        Queue<Vertex<String>> qbaked = new LinkedList<Vertex<String>>();
-
-        qbaked.add(bacon);
-        graph.label(bacon, "root");
-        while (!(current.get().equals(actor.get()))) {
-            outgo = (ArrayList<Edge<String>>) graph.outgoing(qbaked.element());
-            for (int i = 0; i < outgo.size(); i++) {
-                current = graph.to(outgo.get(i));
-                if (graph.label(current) == null) {
-                    qbaked.add(current);
-                    graph.label(current, qbaked.element());
-                    if (current.get().equals(actor.get())) {
-                        break;
-                    }
+    // (or whoever plays him, given as root) and stopping when (a) the
+    // graph is exhausted, (b) we found the actor we're looking for or
+    // (c) we hit one of the search limits. Movies in the excluded set
+    // are never entered, and hub actors jump straight to their
+    // co-stars if --hubs built a projection. Then print the path from
+    // the actor back to Kevin Bacon, or why there is none, and exit
+    // the program. Since we're using BFS we can be sure that the
+    // resulting path is among the shortest ones.
+    private static void solveBacon(Vertex<String> kevin) {
+        int root = graph.id(kevin);
+        int target = graph.id(actor);
+
+        // different components: nothing to search
+        if (!components.connected(root, target)) {
+            System.out.printf("No path from %s to %s.\n", actor.get(),
+                kevin.get());
+            System.exit(0);
+        }
+
+        BoundedSearch bfs = search(kevin, actor, excluded, hubs, maxDepth,
+            maxVisited, maxNanos);
+        switch (bfs.status()) {
+            case FOUND:
+                for (String s : elements(bfs.path())) {
+                    System.out.println(s);
+                }
+                break;
+            case BEYOND_DEPTH:
+                System.out.printf("No path from %s to %s within %d degrees.\n",
+                    actor.get(), kevin.get(), maxDepth / 2);
+                partial(bfs);
+                break;
+            case BUDGET_EXCEEDED:
+                System.out.printf("Search budget exceeded before reaching %s"
+                    + " from %s.\n", actor.get(), kevin.get());
+                partial(bfs);
+                break;
+            default:
+                System.out.printf("No path from %s to %s.\n", actor.get(),
+                    kevin.get());
+                break;
+        }
+        System.exit(0);
+    }
+
+    // Run one bounded search and record it like every query. Frontier
+    // sizes and allocation are only measured if somebody is going to
+    // look at them.
+    private static BoundedSearch search(Vertex<String> root,
+        Vertex<String> target, BitSet skip, HubProjection h, long depth,
+        long visited, long nanos) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        boolean levels = SearchStats.ENABLED || event.isEnabled();
+        long allocated = levels ? SearchStats.allocatedBytes() : 0;
+        BoundedSearch bfs = new BoundedSearch(graph, graph.id(root),
+            graph.id(target), skip, h);
+        bfs.run(depth, visited, nanos, levels);
+        allocated = levels ? SearchStats.allocatedBytes() - allocated : 0;
+        record(event, root, target, bfs.status() == BoundedSearch.Status.FOUND,
+            bfs.visited(), bfs.scanned(), allocated, bfs.frontier(),
+            bfs.nanos());
+        return bfs;
+    }
+
+    // Record one answered query, however it was answered: a
+    // SearchEvent if a recording wants it and an entry in the JMX
+    // statistics if they're on.
+    private static void record(SearchEvent event, Vertex<String> root,
+        Vertex<String> target, boolean found, long visited, long scanned,
+        long allocated, String frontier, long nanos) {
+        SearchStats.searched(visited, scanned, allocated, frontier, nanos);
+        event.end();
+        if (event.shouldCommit()) {
+            event.root = root.get();
+            event.target = target.get();
+            event.found = found;
+            event.visited = visited;
+            event.edgesScanned = scanned;
+            event.allocated = allocated;
+            event.frontier = frontier;
+            event.commit();
+        }
+    }
+
+    // Print how far a search that was cut short got.
+    private static void partial(BoundedSearch bfs) {
+        System.out.printf("Searched %d of %d vertices reached, %d edges,"
+            + " %d degrees deep, in %.1f ms.\n", bfs.visited(), bfs.reached(),
+            bfs.scanned(), bfs.depth() / 2, bfs.nanos() / 1e6);
+    }
+
+    /**
+        Elements along a path of graph vertex ids, such as one
+        found by solveWithin().
+        @param path Vertex ids.
+        @return Elements in the same order.
+    */
+    static List<String> elements(int[] path) {
+        List<String> l = new ArrayList<String>(path.length);
+        for (int v : path) {
+            l.add(graph.vertex(v).get());
+        }
+        return l;
+    }
+
+    /**
+        Shortest path between two vertices within limits.
+
+        Runs a fresh search rather than using the tree cache, so
+        that it can stop as soon as the target turns up or a limit
+        is hit. Safe to call from several threads once the input has
+        been read.
+
+        @param root Vertex to search from.
+        @param target Vertex to search for.
+        @param degrees Most degrees of separation, or -1 for any.
+        @param visited Most vertices to expand, or -1 for any.
+        @param millis Most milliseconds to take, or -1 for any.
+        @return The finished search, or null if the two vertices
+            aren't connected at all.
+    */
+    static BoundedSearch solveWithin(Vertex<String> root,
+        Vertex<String> target, int degrees, long visited, long millis) {
+        if (!components.connected(graph.id(root), graph.id(target))) {
+            SearchEvent event = new SearchEvent();
+            event.begin();
+            record(event, root, target, false, 0, 0, 0, null, 0);
+            return null;
+        }
+        return search(root, target, null,
+            hubs != null && hubs.excludes() == null ? hubs : null,
+            degrees < 0 ? BoundedSearch.UNLIMITED : 2L * degrees,
+            visited < 0 ? BoundedSearch.UNLIMITED : visited,
+            millis < 0 ? BoundedSearch.UNLIMITED : millis * 1000000);
+    }
+
+    // Report how much space the adjacency lists of the compressed
+    // graph take compared to plain int arrays.
+    private static void reportCompressed() {
+        CompressedGraph<String, String> c = (CompressedGraph<String, String>)
+            graph;
+        System.err.printf("compressed: %d edges in %d bytes (%.2f bits/edge),"
+            + " %d bytes as int arrays\n", c.edgeCount(), c.bytes(),
+            8.0 * c.bytes() / Math.max(1, c.edgeCount()),
+            4L * c.edgeCount() + 4L * (c.idBound() + 1));
+    }
+
+    // Replace the graph with a copy outside the heap, in direct
+    // buffers or mapped from a file, and report its size. Names are
+    // looked up in the copy from then on. A file records which
+    // database it was built from.
+    private static void offHeap(File file, File database)
+        throws IOException {
+        long start = System.nanoTime();
+        OffHeapGraph h = OffHeapGraph.of(graph,
+            id -> isActor(id) ? ACTOR : MOVIE, file, database);
+        moveTo(h);
+        vertices = null;
+        System.err.printf("off-heap: %d vertices, %d edges in %d bytes%s,"
+            + " built in %d ms\n", h.idBound(), h.edgeCount(), h.bytes(),
+            file == null ? "" : " mapped from " + file,
+            (System.nanoTime() - start) / 1000000);
+    }
+
+    // Use a graph an earlier run wrote with --offheap-file instead of
+    // reading the database. Components are found again from its
+    // edges; nothing else is on the heap. False if the file can't
+    // be used: an older version wrote it, it's damaged, or it was
+    // built from another database or an earlier state of this one.
+    private static boolean openOffHeap(File file, File database,
+        String who) {
+        long start = System.nanoTime();
+        OffHeapGraph h;
+        try {
+            h = OffHeapGraph.open(file);
+        } catch (IOException e) {
+            System.err.printf("off-heap: can't use %s (%s), reading the"
+                + " database\n", file, e.getMessage());
+            return false;
+        }
+        if (!h.builtFrom(database)) {
+            System.err.printf("off-heap: %s wasn't built from %s as it is"
+                + " now, reading the database\n", file, database);
+            return false;
+        }
+        graph = h;
+        vertices = null;
+        years = new short[0];
+        components = new Components();
+        for (Vertex<String> v : h.vertices()) {
+            int id = h.id(v);
+            components.add(id);
+            h.forEachOutNeighbour(id, w -> components.union(id, w));
+        }
+        components.flatten();
+        bacon = actorNamed("Bacon, Kevin");
+        actor = actorNamed(who);
+        System.err.printf("off-heap: %d vertices, %d edges in %d bytes"
+            + " mapped from %s, opened in %d ms\n", h.idBound(),
+            h.edgeCount(), h.bytes(), file,
+            (System.nanoTime() - start) / 1000000);
+        return true;
+    }
+
+    // Release years of the movies in a graph opened from a file,
+    // parsed from their names again since the file doesn't keep them.
+    private static void readYears() {
+        years = new short[graph.idBound()];
+        for (Vertex<String> v : graph.vertices()) {
+            int id = graph.id(v);
+            if (!isActor(id)) {
+                years[id] = year(v.get());
+            }
+        }
+    }
+
+    // Project the co-stars of the n actors with the most credits,
+    // leaving out excluded movies, and report the size.
+    private static void project(int n) {
+        long start = System.nanoTime();
+        hubs = HubProjection.of(graph,
+            Kevin::isActor, n, excluded);
+        System.err.printf("hubs: %d actors, %d co-stars in %d bytes,"
+            + " built in %d ms\n", hubs.size(), hubs.entries(), hubs.bytes(),
+            (System.nanoTime() - start) / 1000000);
+    }
+
+    // Switch to a copy of the graph with the same vertex ids, moving the
+    // globals over to positions in the copy.
+    private static void moveTo(Graph<String, String> copy) {
+        Graph<String, String> old = graph;
+        if (actor != null) {
+            actor = copy.vertex(old.id(actor));
+        }
+        if (bacon != null) {
+            bacon = copy.vertex(old.id(bacon));
+        }
+        graph = copy;
+    }
+
+    /**
+        Index of actor names for fuzzy lookup, built the first
+        time it's needed.
+        @return Trigram index over all actors in the graph.
+    */
+    static synchronized NameIndex names() {
+        if (names == null) {
+            List<String> actors = new ArrayList<String>();
+            for (Vertex<String> v : graph.vertices()) {
+                if (isActor(graph.id(v))) {
+                    actors.add(v.get());
                 }
             }
-            qbaked.remove();
+            names = new NameIndex(actors);
+        }
+        return names;
+    }
+
+    /**
+        Connected components of the graph read last.
+        @return Components by graph vertex id.
+    */
+    static Components components() {
+        return components;
+    }
+
+    // Print component statistics on standard error.
+    private static void reportComponents() {
+        Components c = components;
+        int big = c.largest();
+        System.err.printf("components: %d over %d vertices, largest %d"
+            + " (%.1f%%)\n", c.count(), c.vertices(), big < 0 ? 0 : c.size(big),
+            big < 0 ? 0.0 : 100.0 * c.size(big) / c.vertices());
+        int[] h = c.histogram();
+        for (int i = 0; i < h.length; i++) {
+            if (h[i] > 0) {
+                System.err.printf("    %d-%d vertices: %d\n", 1 << i,
+                    (int) Math.min(Integer.MAX_VALUE, (2L << i) - 1), h[i]);
+            }
+        }
+    }
+
+    // Tell the user we don't know a name, suggest close ones and exit.
+    private static void notFound(String name) {
+        System.out.printf("Error: Can't find %s in database.\n", name);
+        List<String> close = names().closest(name, SUGGESTIONS);
+        if (!close.isEmpty()) {
+            System.out.printf("Did you mean:\n");
+            for (String s : close) {
+                System.out.printf("    %s\n", s);
+            }
+        }
+        System.exit(1);
+    }
+
+    // Build the snapshot and tree cache the first time they're needed.
+    static synchronized BfsTreeCache trees() {
+        if (trees == null) {
+            if (snapshot == null) {
+                snapshot = GraphSnapshot.of(graph, order);
+            }
+            trees = new BfsTreeCache(snapshot, CACHE_BYTES);
+        }
+        return trees;
+    }
+
+    /**
+        Shortest path between two arbitrary vertices.
+
+        Unlike solveBacon() this works on the graph snapshot and
+        the BFS tree for the root is computed once and cached, so
+        repeated queries from popular roots only walk up a parent
+        array. Vertices in different components are answered
+        without any search. Safe to call from several threads once
+        the input has been read.
+
+        Every call is recorded like a search; one answered from a
+        cached tree visits nothing.
+
+        @param root Vertex to search from.
+        @param target Vertex to search for.
+        @return Elements from target back to root, or null if the
+            target can't be reached from the root.
+    */
+    static List<String> solve(Vertex<String> root, Vertex<String> target) {
+        SearchEvent event = new SearchEvent();
+        event.begin();
+        if (!components.connected(graph.id(root), graph.id(target))) {
+            record(event, root, target, false, 0, 0, 0, null, 0);
+            return null;
+        }
+        BfsTreeCache cache = trees();
+        boolean measure = SearchStats.ENABLED || event.isEnabled();
+        long allocated = measure ? SearchStats.allocatedBytes() : 0;
+        long start = System.nanoTime();
+        long[] work = new long[2];
+        int[] path = cache.path(snapshot.id(root), snapshot.id(target), work);
+        long nanos = System.nanoTime() - start;
+        allocated = measure ? SearchStats.allocatedBytes() - allocated : 0;
+        record(event, root, target, path != null, work[0], work[1], allocated,
+            null, nanos);
+        return path == null ? null : snapshot.elements(path);
+    }
+
+    // Count the shortest paths from root to target and print k of
+    // them, either the first k in depth-first order or k drawn
+    // uniformly at random, separated by blank lines. Exits the
+    // program.
+    private static void solveAll(Vertex<String> root, Vertex<String> target,
+        int k, boolean sample) {
+        if (!components.connected(graph.id(root), graph.id(target))) {
+            System.out.printf("No path from %s to %s.\n", target.get(),
+                root.get());
+            System.exit(0);
+        }
+        trees();
+        ShortestPaths<String> all = new ShortestPaths<String>(snapshot,
+            snapshot.id(root), snapshot.id(target));
+        if (all.length() < 0) {
+            System.out.printf("No path from %s to %s.\n", target.get(),
+                root.get());
+            System.exit(0);
+        }
+        System.out.printf("%s shortest paths of length %d.\n", all.count(),
+            all.length());
+        Random rnd = new Random();
+        Iterator<int[]> paths = all.iterator();
+        for (int i = 0; i < k && (sample || paths.hasNext()); i++) {
+            int[] path = sample ? all.sample(rnd) : paths.next();
+            System.out.println();
+            for (String s : snapshot.elements(path)) {
+                System.out.println(s);
+            }
+        }
+        System.exit(0);
+    }
+
+    // Answer a query between two arbitrary actors from a pruned
+    // landmark labeling of the graph instead of a fresh BFS. Prints
+    // the path from the actor to the other one, then index and query
+    // statistics on standard error, and exits the program.
+    private static void solveOracle(Vertex<String> other) {
+        GraphSnapshot<String> snap = GraphSnapshot.of(graph, order);
+        LandmarkIndex<String> index = new LandmarkIndex<String>(snap);
+        int s = snap.id(actor);
+        int t = snap.id(other);
+
+        // average over repeated queries so warm-up doesn't dominate
+        int d = -1;
+        int rounds = 10000;
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            d = index.distance(s, t);
         }
-        System.out.println(current.get());
-        while (!(current.get().equals(bacon.get()))) {
-            current = (Vertex<String>) graph.label(current);
-            System.out.println(current.get());
+        long queryNanos = (System.nanoTime() - start) / rounds;
+        int[] path = index.path(s, t);
+
+        if (path == null) {
+            System.out.printf("No path from %s to %s.\n", actor.get(),
+                other.get());
+        } else {
+            for (String name : snap.elements(path)) {
+                System.out.println(name);
+            }
         }
+        System.err.printf("index: %d vertices, %d edges, built in %d ms,"
+            + " %d entries, %d bytes\n", snap.size(), snap.edgeCount(),
+            index.buildNanos() / 1000000, index.entries(), index.bytes());
+        System.err.printf("query: distance %d in %.1f us\n", d,
+            queryNanos / 1000.0);
         System.exit(0);
     }
 
+    // Print how to call us and quit.
+    private static void usage() {
+        System.out.printf("Usage: java Kevin [--oracle] [--compressed]"
+            + " [--offheap | --offheap-file f] [--components]"
+            + " [--order none|degree|bfs] [--paths k | --sample k]"
+            + " [--years from-to] [--max-degrees n] [--max-visited n]"
+            + " [--timeout ms] [--hubs n] database actor [other actor]\n");
+        System.exit(1);
+    }
+
+    // The count given to an option, which can't be negative or more
+    // than max; anything else gets the usage line.
+    private static long number(String arg, long max) {
+        try {
+            long n = Long.parseLong(arg);
+            if (n >= 0 && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the usage line
+        }
+        usage();
+        return 0;
+    }
+
     /**
         Main method.
         @param args Command line arguments.
@@ -133,20 +782,154 @@ public final class Kevin {
     */
     public static void main(String[] args)
         throws FileNotFoundException, IOException {
-        // read the input, initialize globals
-        readInput(args[0], args[1]);
+        // leading options, then database, actor and optional other actor
+        boolean oracle = false;
+        boolean compressed = false;
+        boolean stats = false;
+        boolean offHeap = false;
+        File offHeapFile = null;
+        boolean sample = false;
+        int paths = 0;
+        String range = null;
+        boolean bounded = false;
+        int hubCount = 0;
+        int first = 0;
+        while (first < args.length && args[first].startsWith("--")) {
+            if (args[first].equals("--oracle")) {
+                oracle = true;
+            } else if (args[first].equals("--compressed")) {
+                compressed = true;
+            } else if (args[first].equals("--offheap")) {
+                offHeap = true;
+            } else if (args[first].equals("--offheap-file")
+                && first + 1 < args.length) {
+                offHeap = true;
+                offHeapFile = new File(args[++first]);
+            } else if (args[first].equals("--components")) {
+                stats = true;
+            } else if (args[first].equals("--order")
+                && first + 1 < args.length) {
+                try {
+                    order = GraphSnapshot.Order.valueOf(
+                        args[++first].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    System.out.printf("Error: Unknown order %s.\n",
+                        args[first]);
+                    System.exit(1);
+                }
+            } else if ((args[first].equals("--paths")
+                || args[first].equals("--sample"))
+                && first + 1 < args.length) {
+                sample = args[first].equals("--sample");
+                paths = (int) number(args[++first], Integer.MAX_VALUE);
+            } else if (args[first].equals("--years")
+                && first + 1 < args.length) {
+                range = args[++first];
+            } else if (args[first].equals("--max-degrees")
+                && first + 1 < args.length) {
+                maxDepth = 2L * number(args[++first], Integer.MAX_VALUE);
+                bounded = true;
+            } else if (args[first].equals("--max-visited")
+                && first + 1 < args.length) {
+                maxVisited = number(args[++first], Long.MAX_VALUE);
+                bounded = true;
+            } else if (args[first].equals("--hubs")
+                && first + 1 < args.length) {
+                hubCount = (int) number(args[++first], Integer.MAX_VALUE);
+                bounded = true;
+            } else if (args[first].equals("--timeout")
+                && first + 1 < args.length) {
+                maxNanos = number(args[++first], Long.MAX_VALUE / 1000000)
+                    * 1000000;
+                bounded = true;
+            } else {
+                System.out.printf("Error: Unknown option %s.\n", args[first]);
+                System.exit(1);
+            }
+            first++;
+        }
+        if (args.length - first < 2) {
+            usage();
+        }
+        if ((range != null || bounded) && (oracle || paths > 0)) {
+            System.out.printf("Error: --years, --hubs and search limits can't"
+                + " be combined with --oracle, --paths or --sample.\n");
+            System.exit(1);
+        }
+        String who = args[first + 1];
+
+        // read the input, initialize globals; an off-heap file built
+        // from the database as it is now stands in for it
+        File database = new File(args[first]);
+        if (offHeapFile != null && offHeapFile.length() > 0
+            && openOffHeap(offHeapFile, database, who)) {
+            if (range != null) {
+                readYears();
+            }
+        } else {
+            readInput(args[first], who, compressed);
+            if (compressed) {
+                reportCompressed();
+            }
+            if (offHeap) {
+                offHeap(offHeapFile, database);
+            }
+        }
+        if (range != null) {
+            excluded = excludeYears(range);
+        }
+        if (hubCount > 0) {
+            project(hubCount);
+        }
+        if (stats) {
+            reportComponents();
+        }
 
         // check that we could find both actors, quit if not
         if (actor == null) {
-            System.out.printf("Error: Can't find %s in database.\n", args[1]);
-            System.exit(1);
+            notFound(who);
         }
+        // between two arbitrary actors the landmark index or the
+        // cached BFS trees do the work
+        if (oracle || args.length - first > 2) {
+            String name = args.length - first > 2 ? args[first + 2]
+                : "Bacon, Kevin";
+            Vertex<String> other = find(name);
+            if (other == null) {
+                notFound(name);
+            }
+            if (excluded != null || bounded) {
+                solveBacon(other);
+            }
+            if (oracle) {
+                solveOracle(other);
+            }
+            if (paths > 0) {
+                solveAll(other, actor, paths, sample);
+            }
+            List<String> path = solve(other, actor);
+            if (path == null) {
+                System.out.printf("No path from %s to %s.\n", actor.get(),
+                    other.get());
+            } else {
+                for (String s : path) {
+                    System.out.println(s);
+                }
+            }
+            System.exit(0);
+        }
+
         if (bacon == null) {
             System.out.printf("Error: Can't find Bacon, Kevin in database.\n");
             System.exit(1);
         }
 
+        // count and list all the shortest ways to get to Kevin Bacon
+        if (paths > 0) {
+            solveAll(bacon, actor, paths, sample);
+        }
+
         // play "six degrees of Kevin Bacon" using breadth-first search
-        solveBacon();
+        solveBacon(bacon);
     }
 }
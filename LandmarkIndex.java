@@ -0,0 +1,206 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.Arrays;
+
+/**
+    Exact distance oracle using pruned landmark labeling.
+
+    Every vertex v gets a label: a list of (hub, distance) pairs
+    such that for any two vertices s and t the shortest distance
+    is the minimum of d(s, h) + d(h, t) over hubs h that appear
+    in both labels. Labels are built with one pruned BFS per
+    vertex, in order of decreasing degree, so the big hubs of the
+    actor graph end up covering almost every shortest path and
+    the labels stay short.
+
+    Queries merge two sorted labels and take microseconds; paths
+    are reconstructed by walking to any neighbour that is one hop
+    closer according to the oracle.
+
+    The index assumes a symmetric graph (every edge has a reverse
+    edge), which is what Kevin builds.
+
+    @param <V> Type of vertex element
+*/
+public final class LandmarkIndex<V> {
+    private final GraphSnapshot<V> g;
+
+    // label[v] holds hub rank and distance pairs, sorted by rank
+    private final int[][] label;
+
+    // how long construction took and how many pairs we ended up with
+    private final long buildNanos;
+    private final long entries;
+
+    /**
+        Build the index.
+        @param g Snapshot of a symmetric graph.
+    */
+    public LandmarkIndex(GraphSnapshot<V> g) {
+        long start = System.nanoTime();
+        this.g = g;
+        int n = g.size();
+
+        // rank vertices by decreasing degree
+        Integer[] boxed = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, (a, b) -> g.degree(b) - g.degree(a));
+
+        int[][] lab = new int[n][];
+        int[] len = new int[n];
+        int[] dist = new int[n];
+        int[] queue = new int[n];
+        int[] hubDist = new int[n];
+        Arrays.fill(dist, -1);
+        Arrays.fill(hubDist, -1);
+        long count = 0;
+
+        for (int rank = 0; rank < n; rank++) {
+            int root = boxed[rank];
+
+            // spread the root's current label out for O(1) lookups
+            for (int k = 0; k < len[root]; k += 2) {
+                hubDist[lab[root][k]] = lab[root][k + 1];
+            }
+
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            dist[root] = 0;
+            while (head < tail) {
+                int u = queue[head++];
+                int du = dist[u];
+
+                // prune if the labels so far already give du or better
+                boolean covered = false;
+                for (int k = 0; k < len[u]; k += 2) {
+                    int h = hubDist[lab[u][k]];
+                    if (h >= 0 && h + lab[u][k + 1] <= du) {
+                        covered = true;
+                        break;
+                    }
+                }
+                if (covered) {
+                    continue;
+                }
+
+                if (lab[u] == null) {
+                    lab[u] = new int[4];
+                } else if (len[u] == lab[u].length) {
+                    lab[u] = Arrays.copyOf(lab[u], len[u] * 2);
+                }
+                lab[u][len[u]++] = rank;
+                lab[u][len[u]++] = du;
+                count++;
+
+                for (int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+                    int w = g.targets[k];
+                    if (dist[w] < 0) {
+                        dist[w] = du + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+
+            // reset only what we touched
+            for (int i = 0; i < tail; i++) {
+                dist[queue[i]] = -1;
+            }
+            for (int k = 0; k < len[root]; k += 2) {
+                hubDist[lab[root][k]] = -1;
+            }
+        }
+
+        for (int v = 0; v < n; v++) {
+            lab[v] = lab[v] == null ? new int[0] : Arrays.copyOf(lab[v], len[v]);
+        }
+        this.label = lab;
+        this.entries = count;
+        this.buildNanos = System.nanoTime() - start;
+    }
+
+    /**
+        Shortest distance between two vertices.
+        @param s Vertex id.
+        @param t Vertex id.
+        @return Number of hops, or -1 if t can't be reached.
+    */
+    public int distance(int s, int t) {
+        int[] a = this.label[s];
+        int[] b = this.label[t];
+        int best = Integer.MAX_VALUE;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                best = Math.min(best, a[i + 1] + b[j + 1]);
+                i += 2;
+                j += 2;
+            } else if (a[i] < b[j]) {
+                i += 2;
+            } else {
+                j += 2;
+            }
+        }
+        return best == Integer.MAX_VALUE ? -1 : best;
+    }
+
+    /**
+        One shortest path between two vertices.
+        @param s Vertex id to start from.
+        @param t Vertex id to end at.
+        @return Vertex ids from s to t, or null if there is no path.
+    */
+    public int[] path(int s, int t) {
+        int d = this.distance(s, t);
+        if (d < 0) {
+            return null;
+        }
+        int[] p = new int[d + 1];
+        p[0] = s;
+        int cur = s;
+        for (int step = 1; step <= d; step++) {
+            int next = -1;
+            for (int k = this.g.offsets[cur]; k < this.g.offsets[cur + 1]; k++) {
+                int w = this.g.targets[k];
+                if (this.distance(w, t) == d - step) {
+                    next = w;
+                    break;
+                }
+            }
+            cur = next;
+            p[step] = cur;
+        }
+        return p;
+    }
+
+    /**
+        Time spent building the index.
+        @return Nanoseconds.
+    */
+    public long buildNanos() {
+        return this.buildNanos;
+    }
+
+    /**
+        Total number of (hub, distance) pairs across all labels.
+        @return Label entries.
+    */
+    public long entries() {
+        return this.entries;
+    }
+
+    /**
+        Approximate heap footprint of the labels.
+        @return Bytes, counting array headers and references.
+    */
+    public long bytes() {
+        // 16 byte array header plus a 4 byte compressed reference
+        return this.entries * 8 + (long) this.label.length * 20;
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+    Flight recorder event for reading the database into a graph.
+*/
+@Name("bacon.Load")
+@Label("Database Load")
+@Category("Bacon")
+final class LoadEvent extends Event {
+    @Label("File")
+    String file;
+
+    @Label("Lines")
+    long lines;
+
+    @Label("Credits")
+    long credits;
+
+    @Label("Vertices")
+    long vertices;
+
+    @Label("Edges")
+    long edges;
+
+    @Label("Credits per Second")
+    double creditsPerSecond;
+}
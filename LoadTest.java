@@ -0,0 +1,100 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+    Load generator for BaconServer.
+
+    Sends the given number of /bacon requests from a number of
+    concurrent clients, cycling through the actor names given, and
+    reports throughput and latency percentiles.
+
+    Usage: java LoadTest url clients requests actor...
+*/
+public final class LoadTest {
+    // Shut up checkstyle.
+    private LoadTest() {}
+
+    // A positive number, or 0 if the argument isn't one.
+    private static int count(String arg) {
+        try {
+            return Math.max(0, Integer.parseInt(arg));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws InterruptedException If interrupted while waiting.
+    */
+    public static void main(String[] args) throws InterruptedException {
+        // at least one client and request, or there's nothing to measure
+        if (args.length < 4 || count(args[1]) == 0 || count(args[2]) == 0) {
+            System.out.printf("Usage: java LoadTest url clients requests"
+                + " actor...\n");
+            System.exit(1);
+        }
+        String base = args[0];
+        int clients = count(args[1]);
+        int requests = count(args[2]);
+        String[] actors = Arrays.copyOfRange(args, 3, args.length);
+
+        HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1).build();
+        long[] nanos = new long[requests];
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < requests) {
+                    URI uri = URI.create(base + "/bacon?actor="
+                        + URLEncoder.encode(actors[i % actors.length],
+                        StandardCharsets.UTF_8));
+                    long t = System.nanoTime();
+                    try {
+                        HttpResponse<String> r = http.send(
+                            HttpRequest.newBuilder(uri).build(),
+                            HttpResponse.BodyHandlers.ofString());
+                        if (r.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    nanos[i] = System.nanoTime() - t;
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.DAYS);
+        long total = System.nanoTime() - start;
+
+        Arrays.sort(nanos);
+        System.out.printf("%d requests, %d clients, %d errors\n", requests,
+            clients, errors.get());
+        System.out.printf("throughput %.1f requests/s\n",
+            requests * 1e9 / total);
+        System.out.printf("latency p50 %.2f ms, p99 %.2f ms, max %.2f ms\n",
+            nanos[requests / 2] / 1e6, nanos[(int) (requests * 0.99)] / 1e6,
+            nanos[requests - 1] / 1e6);
+    }
+}
@@ -0,0 +1,365 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+    Trigram index for fuzzy name lookup.
+
+    Every name is lower-cased, padded with two spaces in front and
+    one behind, and cut into its distinct three-character windows.
+    The index maps each trigram to the sorted ids of the names that
+    contain it, all in one int array with an offset per trigram.
+
+    A query ranks names by Dice similarity 2 * shared / (query
+    trigrams + name trigrams), and only suggests names sharing at
+    least a third of the query's trigrams. That makes it possible
+    to skip the longest posting lists, those of trigrams common to
+    most names: a name in none of the l - minOverlap + 1 shortest
+    lists can't qualify, and once the best names found are known to
+    beat any name not yet seen, the remaining lists are only
+    searched for the names already found. Shared trigrams are
+    counted in a hash table sized to the lists it may walk, never more
+    than a slot per name, and queries are safe to run from several
+    threads.
+*/
+public final class NameIndex {
+    // set on a candidate's count once its exact score is known
+    private static final int CHECKED = 1 << 30;
+
+    private final String[] names;
+    // distinct trigrams per name
+    private final int[] grams;
+    // trigram to its slot in offsets
+    private final Map<Long, Integer> slots;
+    // postings of slot i are ids[offsets[i]] .. ids[offsets[i + 1] - 1]
+    private final int[] offsets;
+    private final int[] ids;
+
+    /**
+        Index a list of names.
+        @param names Names to index; ids are positions in the list.
+    */
+    public NameIndex(List<String> names) {
+        this.names = names.toArray(new String[0]);
+        this.grams = new int[this.names.length];
+        this.slots = new HashMap<>();
+
+        // first pass: list lengths
+        int[] count = new int[16];
+        for (int i = 0; i < this.names.length; i++) {
+            long[] keys = trigrams(this.names[i]);
+            this.grams[i] = keys.length;
+            for (long k : keys) {
+                Integer s = this.slots.get(k);
+                if (s == null) {
+                    s = this.slots.size();
+                    this.slots.put(k, s);
+                    if (s == count.length) {
+                        count = Arrays.copyOf(count, 2 * count.length);
+                    }
+                }
+                count[s]++;
+            }
+        }
+
+        // second pass: fill the lists; ids come out sorted. Cutting
+        // the names up again is cheaper than keeping every key.
+        int n = this.slots.size();
+        this.offsets = new int[n + 1];
+        for (int s = 0; s < n; s++) {
+            this.offsets[s + 1] = this.offsets[s] + count[s];
+        }
+        this.ids = new int[this.offsets[n]];
+        int[] fill = Arrays.copyOf(this.offsets, n);
+        for (int i = 0; i < this.names.length; i++) {
+            for (long k : trigrams(this.names[i])) {
+                this.ids[fill[this.slots.get(k)]++] = i;
+            }
+        }
+    }
+
+    // Distinct trigrams of a name, three chars packed per key.
+    private static long[] trigrams(String name) {
+        String s = "  " + name.toLowerCase(Locale.ROOT) + " ";
+        long[] keys = new long[s.length() - 2];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16
+                | s.charAt(i + 2);
+        }
+        Arrays.sort(keys);
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (n == 0 || keys[i] != keys[n - 1]) {
+                keys[n++] = keys[i];
+            }
+        }
+        return Arrays.copyOf(keys, n);
+    }
+
+    /**
+        Number of names indexed.
+        @return Count of names.
+    */
+    public int size() {
+        return this.names.length;
+    }
+
+    /**
+        Fewest trigrams a name must share with a query of q distinct
+        trigrams to be suggested: a third of them, so a name with a
+        typo or two in it still qualifies.
+        @param q Distinct trigrams of the query.
+        @return Minimum overlap, at least one.
+    */
+    static int minOverlap(int q) {
+        return Math.max(1, q / 3);
+    }
+
+    // Dice similarity 2 * shared / (q + g) of names with g trigrams
+    // to a query with q, scaled to an integer for exact ties.
+    private static long score(int shared, int g, int q) {
+        return (2L << 20) * shared / (q + g);
+    }
+
+    // How many of the posting lists from j on, by slot in the low
+    // half of lists[j], contain name i.
+    private int shared(int i, long[] lists, int j, int l) {
+        int n = 0;
+        for (; j < l; j++) {
+            int s = (int) lists[j];
+            if (Arrays.binarySearch(this.ids, this.offsets[s],
+                this.offsets[s + 1], i) >= 0) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // First position from p on, before end, of an id of at least i
+    // in ids, or end if there is none: looked for in steps doubling
+    // from p, then by bisection.
+    private int gallop(int p, int end, int i) {
+        if (p >= end || this.ids[p] >= i) {
+            return p;
+        }
+        int lo = p;
+        int step = 1;
+        while (lo + step < end && this.ids[lo + step] < i) {
+            lo += step;
+            step <<= 1;
+        }
+        int at = Arrays.binarySearch(this.ids, lo + 1,
+            Math.min(lo + step, end), i);
+        return at >= 0 ? at : -at - 1;
+    }
+
+    /**
+        Names closest to a query.
+        @param query Name to look for, exact or not.
+        @param k Most names to return.
+        @return Up to k names sharing at least minOverlap() of the
+            query's trigrams, most similar first; ties go to the
+            earlier name.
+        @throws IllegalArgumentException If k is negative.
+    */
+    public List<String> closest(String query, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Negative count");
+        }
+        long[] keys = trigrams(query);
+        int q = keys.length;
+        int need = minOverlap(q);
+
+        // posting lists of the query's trigrams, shortest first, as
+        // length and slot
+        long[] lists = new long[q];
+        int l = 0;
+        for (long key : keys) {
+            Integer s = this.slots.get(key);
+            if (s != null) {
+                lists[l++] = (long) (this.offsets[s + 1] - this.offsets[s])
+                    << 32 | s;
+            }
+        }
+        if (k == 0 || l < need) {
+            return new ArrayList<String>();
+        }
+        Arrays.sort(lists, 0, l);
+
+        // a name in none of the l - need + 1 shortest lists shares
+        // at most need - 1 trigrams, so only names in those can be
+        // candidates
+        int most = l - need + 1;
+        int visits = 0;
+        for (int j = 0; j < most; j++) {
+            visits += (int) (lists[j] >>> 32);
+        }
+
+        // shared trigrams per candidate, in an open-addressing
+        // table at most half full: slot h holds the name's id plus
+        // one, or 0 if empty, at hit[2 * h] and its count next to it,
+        // with CHECKED set once its score is known. Candidates from
+        // most of the names would need a table bigger than the names,
+        // so then slot h is simply name h. The slots in use are
+        // listed in order of first hit.
+        int size = Integer.highestOneBit(
+            4 * Math.max(Math.min(visits, this.names.length), 4) - 1);
+        boolean direct = size >= this.names.length;
+        int mask = direct ? 0 : size - 1;
+        int[] hit = new int[2 * (direct ? this.names.length : size)];
+        int[] used = new int[Math.min(visits, this.names.length)];
+        int t = 0;
+
+        // walk the shortest lists first. After each, the k candidates
+        // that look best are scored exactly, out of those in every
+        // list walked if there are enough of them, else out of all.
+        // Once a name in none of the lists walked couldn't beat the
+        // k-th best of those, no new candidates can make it, and the
+        // long lists of common trigrams, which cost the most, are
+        // never walked
+        PriorityQueue<Long> sure = new PriorityQueue<Long>(k + 1);
+        int[] full = new int[(int) (lists[0] >>> 32)];
+        int scan = 0;
+        while (scan < most) {
+            int s = (int) lists[scan++];
+            int f = 0;
+            for (int p = this.offsets[s]; p < this.offsets[s + 1]; p++) {
+                int i = this.ids[p] + 1;
+                int h = i * 0x9e3779b9;
+                h = direct ? i - 1 : (h ^ h >>> 16) & mask;
+                while (hit[2 * h] != i && hit[2 * h] != 0) {
+                    h = (h + 1) & mask;
+                }
+                if (hit[2 * h] == 0) {
+                    hit[2 * h] = i;
+                    used[t++] = h;
+                }
+                if (++hit[2 * h + 1] == scan) {
+                    full[f++] = h;
+                }
+            }
+            if (scan == most) {
+                break;
+            }
+            this.check(hit, f >= k ? full : used, f >= k ? f : t, k, q,
+                need, lists, scan, l, sure);
+            int left = l - scan;
+            if (sure.size() == k && sure.peek() > score(left, left, q)) {
+                break;
+            }
+        }
+
+        // the lists not walked are searched only for candidates that
+        // could still make the best k, the others are dropped. Those
+        // left go by id, id in the high half and slot in the low, so
+        // each list is searched forward from where the last id was
+        int left = l - scan;
+        long floor = sure.size() == k ? sure.peek() : -1;
+        long[] alive = new long[t];
+        int live = 0;
+        for (int c = 0; c < t; c++) {
+            int h = used[c];
+            int i = hit[2 * h] - 1;
+            int n = hit[2 * h + 1] & ~CHECKED;
+            int g = this.grams[i];
+            if (n + left < need
+                || score(Math.min(n + left, g), g, q) < floor) {
+                hit[2 * h + 1] = 0;
+            } else {
+                hit[2 * h + 1] = n;
+                alive[live++] = (long) i << 32 | h;
+            }
+        }
+        Arrays.sort(alive, 0, live);
+        for (int j = scan; j < l; j++) {
+            int s = (int) lists[j];
+            int p = this.offsets[s];
+            int end = this.offsets[s + 1];
+            for (int c = 0; c < live && p < end; c++) {
+                int i = (int) (alive[c] >>> 32);
+                p = this.gallop(p, end, i);
+                if (p < end && this.ids[p] == i) {
+                    hit[2 * (int) alive[c] + 1]++;
+                }
+            }
+        }
+
+        // keep the best k in a min-heap: worst score, then latest id
+        // on top
+        PriorityQueue<long[]> best = new PriorityQueue<long[]>(
+            Math.min(k, t) + 1, (a, b) -> a[0] != b[0]
+                ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+        for (int c = 0; c < t; c++) {
+            int h = used[c];
+            if (hit[2 * h + 1] < need) {
+                continue;
+            }
+            // candidates come in no particular order, so a tie with
+            // the worst kept may still win on id
+            int i = hit[2 * h] - 1;
+            long score = score(hit[2 * h + 1], this.grams[i], q);
+            if (best.size() == k && (score < best.peek()[0]
+                || score == best.peek()[0] && i > best.peek()[1])) {
+                continue;
+            }
+            best.add(new long[] {score, i});
+            if (best.size() > k) {
+                best.poll();
+            }
+        }
+
+        String[] out = new String[best.size()];
+        for (int j = out.length - 1; j >= 0; j--) {
+            out[j] = this.names[(int) best.poll()[1]];
+        }
+        return new ArrayList<String>(Arrays.asList(out));
+    }
+
+    // Score exactly the k of the t candidates in slots that look
+    // best by the first scan lists alone, searching the rest of the
+    // l lists for them, and keep the k best exact scores in sure.
+    private void check(int[] hit, int[] slots, int t, int k, int q,
+        int need, long[] lists, int scan, int l, PriorityQueue<Long> sure) {
+        // score in the high half, slot in the low
+        PriorityQueue<Long> top = new PriorityQueue<Long>(k + 1);
+        for (int c = 0; c < t; c++) {
+            int h = slots[c];
+            if ((hit[2 * h + 1] & CHECKED) != 0) {
+                continue;
+            }
+            long key = score(hit[2 * h + 1], this.grams[hit[2 * h] - 1], q)
+                << 32 | h;
+            if (top.size() < k) {
+                top.add(key);
+            } else if (key >>> 32 > top.peek() >>> 32) {
+                top.poll();
+                top.add(key);
+            }
+        }
+        for (long key : top) {
+            int h = (int) key;
+            int i = hit[2 * h] - 1;
+            int n = hit[2 * h + 1] + this.shared(i, lists, scan, l);
+            hit[2 * h + 1] |= CHECKED;
+            if (n < need) {
+                continue;
+            }
+            long score = score(n, this.grams[i], q);
+            if (sure.size() < k) {
+                sure.add(score);
+            } else if (score > sure.peek()) {
+                sure.poll();
+                sure.add(score);
+            }
+        }
+    }
+}
@@ -0,0 +1,481 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+import java.util.function.IntUnaryOperator;
+import graphs.*;
+
+/**
+    A read-only Graph<String, String> kept outside the Java heap.
+
+    Everything that grows with the graph lives in direct or
+    memory-mapped buffers: a kind byte per vertex (0 for ids
+    without a vertex), UTF-8 names with an offset per vertex, the
+    adjacency lists in compressed sparse row form (an offset per
+    vertex into pages of neighbour ids), and the vertex ids sorted
+    by name so find() can binary search them. The heap holds only
+    this object and the buffer headers, so garbage collection
+    doesn't get slower as the graph grows, and searches read the
+    buffers directly through forEachOutNeighbour.
+
+    Adjacency lists keep the order of the graph the copy was made
+    from, so searches visit vertices exactly as they would there.
+    If every edge has a reverse edge only the outgoing lists are
+    stored and incoming edges come from them.
+
+    A graph can be backed by a file: of(g, kind, file, source)
+    writes the layout there while building, and open(file) maps an
+    existing one read-only, with no parsing at all. The mapping
+    stays until the buffers are garbage collected. The header
+    records the path, length and modification time of the database
+    the graph came from, so builtFrom() can tell whether the file
+    still stands for it.
+
+    Vertex ids are the ids of the graph the copy was made from.
+    Positions and labels work as in any ReadOnlyGraph; get() on a
+    vertex decodes its name every time, and nothing can be changed.
+    At most 2^31 - 1 edges and 2^31 - 1 bytes of names can be
+    stored.
+*/
+public final class OffHeapGraph extends ReadOnlyGraph<String, String> {
+    private static final int MAGIC = 0x4241434e;
+    private static final int VERSION = 3;
+    private static final int HEADER = 48;
+    // neighbour ids per page, so no buffer exceeds 1 GB
+    private static final int PAGE_BITS = 28;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+
+    // Where a section of the layout goes: a fresh direct buffer,
+    // or a region of a mapped file.
+    private interface Memory {
+        ByteBuffer get(long at, long size) throws IOException;
+    }
+
+    // Adjacency lists in one direction.
+    private static final class Lists {
+        final IntBuffer offsets;
+        final IntBuffer[] pages;
+
+        Lists(IntBuffer offsets, IntBuffer[] pages) {
+            this.offsets = offsets;
+            this.pages = pages;
+        }
+
+        void forEach(int v, IntConsumer f) {
+            int end = this.offsets.get(v + 1);
+            for (int k = this.offsets.get(v); k < end; k++) {
+                f.accept(this.pages[k >>> PAGE_BITS].get(k & PAGE_MASK));
+            }
+        }
+
+        int degree(int v) {
+            return this.offsets.get(v + 1) - this.offsets.get(v);
+        }
+    }
+
+    private final int n;
+    private final long bytes;
+    // database the graph was built from, or null if not recorded
+    private final String source;
+    private final long sourceLength;
+    private final long sourceModified;
+    private final ByteBuffer kinds;
+    private final IntBuffer nameAt;
+    private final ByteBuffer names;
+    private final Lists out;
+    private final Lists in;
+    // ids of all vertices in name order
+    private final IntBuffer byName;
+
+    // Lay out sections for a graph of the given shape, reading or
+    // filling them through mem. The source path takes sourceBytes
+    // after the header.
+    private OffHeapGraph(Memory mem, int n, int m, int nameBytes,
+        boolean symmetric, int live, String source, int sourceBytes,
+        long sourceLength, long sourceModified) throws IOException {
+        this.n = n;
+        this.source = source;
+        this.sourceLength = sourceLength;
+        this.sourceModified = sourceModified;
+        long at = align(HEADER + sourceBytes);
+        this.kinds = mem.get(at, n);
+        at = align(at + n);
+        this.nameAt = mem.get(at, 4L * (n + 1)).asIntBuffer();
+        at = align(at + 4L * (n + 1));
+        this.names = mem.get(at, nameBytes);
+        at = align(at + nameBytes);
+        this.out = lists(mem, at, n, m);
+        at = align(at + 4L * (n + 1) + 4L * m);
+        if (symmetric) {
+            this.in = null;
+        } else {
+            this.in = lists(mem, at, n, m);
+            at = align(at + 4L * (n + 1) + 4L * m);
+        }
+        this.byName = mem.get(at, 4L * live).asIntBuffer();
+        at = align(at + 4L * live);
+        this.bytes = at;
+    }
+
+    private static long align(long at) {
+        return (at + 7) & ~7L;
+    }
+
+    private static Lists lists(Memory mem, long at, int n, int m)
+        throws IOException {
+        IntBuffer offsets = mem.get(at, 4L * (n + 1)).asIntBuffer();
+        at += 4L * (n + 1);
+        IntBuffer[] pages = new IntBuffer[(int) (((long) m + PAGE_MASK)
+            >>> PAGE_BITS)];
+        for (int p = 0; p < pages.length; p++) {
+            int size = Math.min(1 << PAGE_BITS, m - (p << PAGE_BITS));
+            pages[p] = mem.get(at, 4L * size).asIntBuffer();
+            at += 4L * size;
+        }
+        return new Lists(offsets, pages);
+    }
+
+    /**
+        Copy a graph into direct buffers.
+        @param g Graph to copy; later changes to it are not seen.
+        @param kind Kind of every vertex by id, from 1 to 255.
+        @param <E> Type of edge element
+        @return Off-heap copy with the same vertex ids.
+        @throws IllegalArgumentException If a kind is out of range
+            or the graph is too big.
+    */
+    public static <E> OffHeapGraph of(Graph<String, E> g,
+        IntUnaryOperator kind) {
+        try {
+            return of(g, kind, null, null);
+        } catch (IOException e) {
+            // direct buffers don't do I/O
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+        Copy a graph into a file and map it.
+        @param g Graph to copy; later changes to it are not seen.
+        @param kind Kind of every vertex by id, from 1 to 255.
+        @param file File to write, replacing its contents, or null
+            to use direct buffers instead.
+        @param source Database the graph was read from, whose path,
+            length and modification time are recorded, or null.
+        @param <E> Type of edge element
+        @return Off-heap copy with the same vertex ids.
+        @throws IOException If the file can't be written.
+        @throws IllegalArgumentException If a kind is out of range
+            or the graph is too big.
+    */
+    public static <E> OffHeapGraph of(Graph<String, E> g,
+        IntUnaryOperator kind, File file, File source) throws IOException {
+        int n = g.idBound();
+        byte[] kinds = new byte[n];
+        String[] names = new String[n];
+        long nameBytes = 0;
+        int live = 0;
+        for (Vertex<String> v : g.vertices()) {
+            int id = g.id(v);
+            int k = kind.applyAsInt(id);
+            if (k < 1 || k > 255) {
+                throw new IllegalArgumentException("Invalid vertex kind");
+            }
+            kinds[id] = (byte) k;
+            names[id] = v.get();
+            nameBytes += names[id].getBytes(StandardCharsets.UTF_8).length;
+            live++;
+        }
+
+        // in-lists on the heap for the duration, to see whether
+        // they're needed at all
+        int[] inAt = new int[n + 1];
+        long edges = 0;
+        int[] cursor = new int[1];
+        for (int v = 0; v < n; v++) {
+            if (kinds[v] != 0) {
+                g.forEachOutNeighbour(v, w -> inAt[w + 1]++);
+            }
+        }
+        for (int v = 0; v < n; v++) {
+            edges += inAt[v + 1];
+            inAt[v + 1] += inAt[v];
+        }
+        if (edges > Integer.MAX_VALUE || nameBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Graph too big");
+        }
+        int m = (int) edges;
+        int[] inTo = new int[m];
+        int[] fill = Arrays.copyOf(inAt, n);
+        for (int v = 0; v < n; v++) {
+            int from = v;
+            if (kinds[v] != 0) {
+                g.forEachOutNeighbour(v, w -> inTo[fill[w]++] = from);
+            }
+        }
+
+        RandomAccessFile raf = file == null ? null
+            : new RandomAccessFile(file, "rw");
+        try {
+            FileChannel ch = raf == null ? null : raf.getChannel();
+            if (raf != null) {
+                raf.setLength(0);
+            }
+            Memory mem = ch == null
+                ? (at, size) -> ByteBuffer.allocateDirect((int) size)
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                : (at, size) -> ch.map(FileChannel.MapMode.READ_WRITE, at,
+                    size).order(ByteOrder.LITTLE_ENDIAN);
+
+            // out-lists first, then check them against the in-lists
+            boolean symmetric = true;
+            int[] outAt = new int[n + 1];
+            for (int v = 0; v < n; v++) {
+                cursor[0] = 0;
+                if (kinds[v] != 0) {
+                    g.forEachOutNeighbour(v, w -> cursor[0]++);
+                }
+                outAt[v + 1] = outAt[v] + cursor[0];
+            }
+            int[] outTo = new int[m];
+            for (int v = 0; v < n; v++) {
+                cursor[0] = outAt[v];
+                if (kinds[v] != 0) {
+                    g.forEachOutNeighbour(v, w -> outTo[cursor[0]++] = w);
+                    int[] a = Arrays.copyOfRange(outTo, outAt[v], outAt[v + 1]);
+                    int[] b = Arrays.copyOfRange(inTo, inAt[v], inAt[v + 1]);
+                    Arrays.sort(a);
+                    symmetric &= Arrays.equals(a, b);
+                }
+            }
+
+            String path = source == null ? null : path(source);
+            byte[] sourceName = path == null ? new byte[0]
+                : path.getBytes(StandardCharsets.UTF_8);
+            long sourceLength = source == null ? 0 : source.length();
+            long sourceModified = source == null ? 0 : source.lastModified();
+            OffHeapGraph h = new OffHeapGraph(mem, n, m, (int) nameBytes,
+                symmetric, live, path, sourceName.length, sourceLength,
+                sourceModified);
+            h.kinds.put(0, kinds);
+            int pos = 0;
+            Integer[] order = new Integer[live];
+            live = 0;
+            for (int v = 0; v < n; v++) {
+                h.nameAt.put(v, pos);
+                if (kinds[v] != 0) {
+                    byte[] b = names[v].getBytes(StandardCharsets.UTF_8);
+                    h.names.put(pos, b);
+                    pos += b.length;
+                    order[live++] = v;
+                }
+            }
+            h.nameAt.put(n, pos);
+            Arrays.sort(order, (a, b) -> names[a].compareTo(names[b]));
+            for (int i = 0; i < live; i++) {
+                h.byName.put(i, order[i]);
+            }
+            write(h.out, outAt, outTo);
+            if (!symmetric) {
+                write(h.in, inAt, inTo);
+            }
+
+            if (ch != null) {
+                // pad to the end of the last section, which open()
+                // checks against the header
+                raf.setLength(h.bytes);
+                ByteBuffer head = mem.get(0, HEADER);
+                head.putInt(0, MAGIC);
+                head.putInt(4, VERSION);
+                head.putInt(8, n);
+                head.putInt(12, m);
+                head.putInt(16, (int) nameBytes);
+                head.putInt(20, symmetric ? 1 : 0);
+                head.putInt(24, live);
+                head.putInt(28, sourceName.length);
+                head.putLong(32, sourceLength);
+                head.putLong(40, sourceModified);
+                mem.get(HEADER, sourceName.length).put(0, sourceName);
+            }
+            return h;
+        } finally {
+            if (raf != null) {
+                raf.close();
+            }
+        }
+    }
+
+    private static void write(Lists l, int[] at, int[] to) {
+        l.offsets.put(0, at);
+        for (int p = 0; p < l.pages.length; p++) {
+            l.pages[p].put(0, to, p << PAGE_BITS, l.pages[p].capacity());
+        }
+    }
+
+    // The form a source path is recorded and compared in.
+    private static String path(File f) {
+        return f.getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    /**
+        Map a graph written by of(g, kind, file, source).
+        @param file File to map, read-only.
+        @return Graph backed by the file.
+        @throws IOException If the file can't be read, wasn't
+            written by this class or isn't as long as its header
+            says.
+    */
+    public static OffHeapGraph open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel ch = raf.getChannel();
+            long length = ch.size();
+            if (length < HEADER) {
+                throw new IOException("Not a graph file: " + file);
+            }
+            // every section must lie inside the file, or a truncated
+            // one would only fail when a search got to the missing part
+            Memory mem = (at, size) -> {
+                if (size < 0 || at + size > length) {
+                    throw new IOException("Truncated graph file: " + file);
+                }
+                return ch.map(FileChannel.MapMode.READ_ONLY, at, size)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            };
+            ByteBuffer head = mem.get(0, HEADER);
+            if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION) {
+                throw new IOException("Not a graph file: " + file);
+            }
+            int n = head.getInt(8);
+            int m = head.getInt(12);
+            int nameBytes = head.getInt(16);
+            int live = head.getInt(24);
+            int sourceBytes = head.getInt(28);
+            if (n < 0 || m < 0 || nameBytes < 0 || live < 0 || live > n
+                || sourceBytes < 0) {
+                throw new IOException("Corrupt graph file: " + file);
+            }
+            byte[] b = new byte[sourceBytes];
+            mem.get(HEADER, sourceBytes).get(0, b);
+            OffHeapGraph h = new OffHeapGraph(mem, n, m, nameBytes,
+                head.getInt(20) != 0, live, sourceBytes == 0 ? null
+                : new String(b, StandardCharsets.UTF_8), sourceBytes,
+                head.getLong(32), head.getLong(40));
+            if (h.bytes != length) {
+                throw new IOException("Graph file of the wrong size: "
+                    + file);
+            }
+            return h;
+        }
+    }
+
+    /**
+        Whether the graph was built from a database as it is now.
+        @param database Database file.
+        @return True if the path recorded when the graph was built
+            is that of the database, and its length and modification
+            time haven't changed since.
+    */
+    public boolean builtFrom(File database) {
+        return this.source != null && this.source.equals(path(database))
+            && this.sourceLength == database.length()
+            && this.sourceModified == database.lastModified();
+    }
+
+    boolean exists(int id) {
+        return this.kinds.get(id) != 0;
+    }
+
+    // Decode the name of vertex id.
+    String element(int id) {
+        int at = this.nameAt.get(id);
+        byte[] b = new byte[this.nameAt.get(id + 1) - at];
+        this.names.get(at, b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    int outDegree(int id) {
+        return this.out.degree(id);
+    }
+
+    int inDegree(int id) {
+        return (this.in == null ? this.out : this.in).degree(id);
+    }
+
+    void forEachOut(int id, IntConsumer f) {
+        this.out.forEach(id, f);
+    }
+
+    void forEachIn(int id, IntConsumer f) {
+        (this.in == null ? this.out : this.in).forEach(id, f);
+    }
+
+    /**
+        Upper bound on vertex ids.
+        @return One more than the largest id.
+    */
+    public int idBound() {
+        return this.n;
+    }
+
+    /**
+        Look up a vertex by name.
+        @param name Element of the vertex to find.
+        @return Its id, or -1 if no vertex has that name; any one
+            of them if several do.
+    */
+    public int find(String name) {
+        int lo = 0;
+        int hi = this.byName.capacity() - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = this.byName.get(mid);
+            int c = this.element(id).compareTo(name);
+            if (c == 0) {
+                return id;
+            } else if (c < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+        Kind of vertex, as given when the graph was copied.
+        @param id Vertex id.
+        @return Kind from 1 to 255.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    public int kind(int id) {
+        return this.kinds.get(this.validate(id)) & 0xff;
+    }
+
+    /**
+        Number of edges.
+        @return Edge count.
+    */
+    public long edgeCount() {
+        return this.out.offsets.get(this.n);
+    }
+
+    /**
+        Size of the off-heap layout.
+        @return Bytes, counting the file header.
+    */
+    public long bytes() {
+        return this.bytes;
+    }
+}
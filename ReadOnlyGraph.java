@@ -0,0 +1,466 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.IntConsumer;
+import graphs.*;
+
+/**
+    Common part of the read-only graphs that keep their adjacency
+    lists in some packed form and go by vertex id alone.
+
+    Subclasses say which ids have vertices, what their elements
+    are and how to walk the lists in each direction; positions,
+    labels and the Graph<V, E> methods built on those live here.
+
+    Positions are created on demand, so two positions for the same
+    vertex or edge are equal but not identical. Edges carry no
+    elements: get() returns null and put() is unsupported. All
+    insertions and removals throw UnsupportedOperationException.
+
+    @param <V> Type of vertex element
+    @param <E> Type of edge element
+*/
+abstract class ReadOnlyGraph<V, E> implements Graph<V, E> {
+    // labels are rare, so storage for them is made on first use
+    private Object[] vertexLabels;
+    private Map<Long, Object> edgeLabels;
+
+    private final class VertexRef implements Vertex<V> {
+        final int id;
+
+        VertexRef(int id) {
+            this.id = id;
+        }
+
+        public V get() {
+            return ReadOnlyGraph.this.element(this.id);
+        }
+
+        public void put(V v) {
+            ReadOnlyGraph.this.element(this.id, v);
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof ReadOnlyGraph.VertexRef
+                && ((ReadOnlyGraph<?, ?>.VertexRef) o).owner() == this.owner()
+                && ((ReadOnlyGraph<?, ?>.VertexRef) o).id == this.id;
+        }
+
+        public int hashCode() {
+            return this.id;
+        }
+
+        private ReadOnlyGraph<V, E> owner() {
+            return ReadOnlyGraph.this;
+        }
+    }
+
+    private final class EdgeRef implements Edge<E> {
+        final int from;
+        final int to;
+
+        EdgeRef(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public E get() {
+            return null;
+        }
+
+        public void put(E e) {
+            throw new UnsupportedOperationException("Read-only graph");
+        }
+
+        public boolean equals(Object o) {
+            return o instanceof ReadOnlyGraph.EdgeRef
+                && ((ReadOnlyGraph<?, ?>.EdgeRef) o).owner() == this.owner()
+                && ((ReadOnlyGraph<?, ?>.EdgeRef) o).from == this.from
+                && ((ReadOnlyGraph<?, ?>.EdgeRef) o).to == this.to;
+        }
+
+        public int hashCode() {
+            return 31 * this.from + this.to;
+        }
+
+        long key() {
+            return ((long) this.from << 32) | (this.to & 0xffffffffL);
+        }
+
+        private ReadOnlyGraph<V, E> owner() {
+            return ReadOnlyGraph.this;
+        }
+    }
+
+    /**
+        Whether there is a vertex with an id.
+        @param id Vertex id, from 0 to idBound() - 1.
+        @return True if the id is in use.
+    */
+    abstract boolean exists(int id);
+
+    /**
+        Element of a vertex.
+        @param id Id of an existing vertex.
+        @return Its element.
+    */
+    abstract V element(int id);
+
+    /**
+        Replace the element of a vertex; unsupported unless a
+        subclass says otherwise.
+        @param id Id of an existing vertex.
+        @param v New element.
+        @throws UnsupportedOperationException If elements are fixed.
+    */
+    void element(int id, V v) {
+        throw new UnsupportedOperationException("Read-only graph");
+    }
+
+    /**
+        Number of outgoing edges of a vertex.
+        @param id Id of an existing vertex.
+        @return Out-degree.
+    */
+    abstract int outDegree(int id);
+
+    /**
+        Number of incoming edges of a vertex.
+        @param id Id of an existing vertex.
+        @return In-degree.
+    */
+    abstract int inDegree(int id);
+
+    /**
+        Visit the vertices outgoing edges lead to, unchecked.
+        @param id Id of an existing vertex.
+        @param f Gets each neighbour's id.
+    */
+    abstract void forEachOut(int id, IntConsumer f);
+
+    /**
+        Visit the vertices incoming edges come from, unchecked.
+        @param id Id of an existing vertex.
+        @param f Gets each neighbour's id.
+    */
+    abstract void forEachIn(int id, IntConsumer f);
+
+    /**
+        Check a vertex id.
+        @param id Id to check.
+        @return The id.
+        @throws IllegalArgumentException If there's no such vertex.
+    */
+    int validate(int id) {
+        if (id < 0 || id >= this.idBound() || !this.exists(id)) {
+            throw new IllegalArgumentException("Invalid vertex id");
+        }
+        return id;
+    }
+
+    private int validate(Vertex<V> v) {
+        if (v == null || !(v instanceof ReadOnlyGraph.VertexRef)) {
+            throw new IllegalArgumentException("Invalid vertex position");
+        }
+        ReadOnlyGraph<?, ?>.VertexRef r = (ReadOnlyGraph<?, ?>.VertexRef) v;
+        if (r.owner() != this) {
+            throw new IllegalArgumentException("Invalid vertex position");
+        }
+        return r.id;
+    }
+
+    private ReadOnlyGraph<?, ?>.EdgeRef validate(Edge<E> e) {
+        if (e == null || !(e instanceof ReadOnlyGraph.EdgeRef)) {
+            throw new IllegalArgumentException("Invalid edge position");
+        }
+        ReadOnlyGraph<?, ?>.EdgeRef r = (ReadOnlyGraph<?, ?>.EdgeRef) e;
+        if (r.owner() != this) {
+            throw new IllegalArgumentException("Invalid edge position");
+        }
+        return r;
+    }
+
+    /**
+        Insert new vertex; not supported.
+        @param v Element to insert.
+        @return Never returns.
+        @throws UnsupportedOperationException Always.
+    */
+    public Vertex<V> insert(V v) {
+        throw new UnsupportedOperationException("Read-only graph");
+    }
+
+    /**
+        Insert new edge; not supported.
+        @param from Vertex position where edge starts.
+        @param to Vertex position where edge ends.
+        @param e Element to insert.
+        @return Never returns.
+        @throws UnsupportedOperationException Always.
+    */
+    public Edge<E> insert(Vertex<V> from, Vertex<V> to, E e) {
+        throw new UnsupportedOperationException("Read-only graph");
+    }
+
+    /**
+        Remove a vertex; not supported.
+        @param v Vertex position to remove.
+        @return Never returns.
+        @throws UnsupportedOperationException Always.
+    */
+    public V remove(Vertex<V> v) {
+        throw new UnsupportedOperationException("Read-only graph");
+    }
+
+    /**
+        Remove an edge; not supported.
+        @param e Edge position to remove.
+        @return Never returns.
+        @throws UnsupportedOperationException Always.
+    */
+    public E remove(Edge<E> e) {
+        throw new UnsupportedOperationException("Read-only graph");
+    }
+
+    /**
+        Vertices of graph.
+        @return Iterable that can be used to explore the
+          vertices of the graph in id order.
+    */
+    public Iterable<Vertex<V>> vertices() {
+        return () -> new Iterator<Vertex<V>>() {
+            private int next = this.skip(0);
+
+            private int skip(int i) {
+                while (i < ReadOnlyGraph.this.idBound()
+                    && !ReadOnlyGraph.this.exists(i)) {
+                    i++;
+                }
+                return i;
+            }
+
+            public boolean hasNext() {
+                return this.next < ReadOnlyGraph.this.idBound();
+            }
+
+            public Vertex<V> next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Vertex<V> v = new VertexRef(this.next);
+                this.next = this.skip(this.next + 1);
+                return v;
+            }
+        };
+    }
+
+    /**
+        Edges of graph.
+        @return Iterable that can be used to explore the
+          edges of the graph, grouped by start vertex.
+    */
+    public Iterable<Edge<E>> edges() {
+        return () -> new Iterator<Edge<E>>() {
+            private int from = -1;
+            private int[] to = new int[0];
+            private int i;
+
+            public boolean hasNext() {
+                ReadOnlyGraph<V, E> g = ReadOnlyGraph.this;
+                while (this.i == this.to.length
+                    && this.from + 1 < g.idBound()) {
+                    this.from++;
+                    if (g.exists(this.from)) {
+                        int[] a = new int[g.outDegree(this.from)];
+                        int[] k = new int[1];
+                        g.forEachOut(this.from, w -> a[k[0]++] = w);
+                        this.to = a;
+                    } else {
+                        this.to = new int[0];
+                    }
+                    this.i = 0;
+                }
+                return this.i < this.to.length;
+            }
+
+            public Edge<E> next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return new EdgeRef(this.from, this.to[this.i++]);
+            }
+        };
+    }
+
+    /**
+        Outgoing edges of vertex.
+        @param v Vertex position to explore.
+        @return Iterable that can be used to explore the
+          outgoing edges of the given vertex.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public Iterable<Edge<E>> outgoing(Vertex<V> v)
+        throws IllegalArgumentException {
+        int id = this.validate(v);
+        ArrayList<Edge<E>> l = new ArrayList<Edge<E>>(this.outDegree(id));
+        this.forEachOut(id, w -> l.add(new EdgeRef(id, w)));
+        return l;
+    }
+
+    /**
+        Incoming edges of vertex.
+        @param v Vertex position to explore.
+        @return Iterable that can be used to explore the
+          incoming edges of the given vertex.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public Iterable<Edge<E>> incoming(Vertex<V> v)
+        throws IllegalArgumentException {
+        int id = this.validate(v);
+        ArrayList<Edge<E>> l = new ArrayList<Edge<E>>(this.inDegree(id));
+        this.forEachIn(id, w -> l.add(new EdgeRef(w, id)));
+        return l;
+    }
+
+    /**
+        Visit out-neighbours of vertex by id.
+        @param v Id of vertex to explore.
+        @param f Called with the id of the vertex each outgoing
+            edge leads to, in the order the subclass keeps them.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    public void forEachOutNeighbour(int v, IntConsumer f)
+        throws IllegalArgumentException {
+        this.forEachOut(this.validate(v), f);
+    }
+
+    /**
+        Id of vertex.
+        @param v Vertex position to query.
+        @return Id of the vertex.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public int id(Vertex<V> v)
+        throws IllegalArgumentException {
+        return this.validate(v);
+    }
+
+    /**
+        Vertex with id.
+        @param id Id to look up.
+        @return Vertex position with that id.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    public Vertex<V> vertex(int id)
+        throws IllegalArgumentException {
+        return new VertexRef(this.validate(id));
+    }
+
+    /**
+        Start vertex of edge.
+        @param e Edge position to explore.
+        @return Vertex position edge starts from.
+        @throws IllegalArgumentException If edge position
+            is invalid.
+    */
+    public Vertex<V> from(Edge<E> e)
+        throws IllegalArgumentException {
+        return new VertexRef(this.validate(e).from);
+    }
+
+    /**
+        End vertex of edge.
+        @param e Edge position to explore.
+        @return Vertex position edge leads to.
+        @throws IllegalArgumentException If edge position
+            is invalid.
+    */
+    public Vertex<V> to(Edge<E> e)
+        throws IllegalArgumentException {
+        return new VertexRef(this.validate(e).to);
+    }
+
+    /**
+        Label vertex with object.
+        @param v Vertex position to label.
+        @param l Label object.
+        @throws IllegalArgumentException If vertex position
+            is invalid or label is null.
+    */
+    public void label(Vertex<V> v, Object l)
+        throws IllegalArgumentException {
+        if (l == null) {
+            throw new IllegalArgumentException("Null label not allowed.");
+        }
+        int id = this.validate(v);
+        if (this.vertexLabels == null) {
+            this.vertexLabels = new Object[this.idBound()];
+        }
+        this.vertexLabels[id] = l;
+    }
+
+    /**
+        Label edge with object.
+        @param e Edge position to label.
+        @param l Label object.
+        @throws IllegalArgumentException If edge position
+            is invalid or label is null.
+    */
+    public void label(Edge<E> e, Object l)
+        throws IllegalArgumentException {
+        if (l == null) {
+            throw new IllegalArgumentException("Null label not allowed.");
+        }
+        ReadOnlyGraph<?, ?>.EdgeRef r = this.validate(e);
+        if (this.edgeLabels == null) {
+            this.edgeLabels = new HashMap<Long, Object>();
+        }
+        this.edgeLabels.put(r.key(), l);
+    }
+
+    /**
+        Vertex label.
+        @param v Vertex position to query.
+        @return Label object (or null if none).
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public Object label(Vertex<V> v)
+        throws IllegalArgumentException {
+        int id = this.validate(v);
+        return this.vertexLabels == null ? null : this.vertexLabels[id];
+    }
+
+    /**
+        Edge label.
+        @param e Edge position to query.
+        @return Label object (or null if none).
+        @throws IllegalArgumentException If edge position
+            is invalid.
+    */
+    public Object label(Edge<E> e)
+        throws IllegalArgumentException {
+        ReadOnlyGraph<?, ?>.EdgeRef r = this.validate(e);
+        return this.edgeLabels == null ? null : this.edgeLabels.get(r.key());
+    }
+
+    /**
+        Clear all labels.
+    */
+    public void clearLabels() {
+        this.vertexLabels = null;
+        this.edgeLabels = null;
+    }
+}
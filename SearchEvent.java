@@ -0,0 +1,38 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+    Flight recorder event for one breadth-first search.
+*/
+@Name("bacon.Search")
+@Label("Bacon Search")
+@Category("Bacon")
+final class SearchEvent extends Event {
+    @Label("Root")
+    String root;
+
+    @Label("Target")
+    String target;
+
+    @Label("Found")
+    boolean found;
+
+    @Label("Vertices Visited")
+    long visited;
+
+    @Label("Edges Scanned")
+    long edgesScanned;
+
+    @Label("Bytes Allocated")
+    long allocated;
+
+    @Label("Frontier Sizes")
+    String frontier;
+}
@@ -0,0 +1,183 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+    Loading and search statistics exposed over JMX.
+
+    Collection is off unless the JVM runs with -Dbacon.metrics=true;
+    ENABLED is a constant so the JIT folds the checks away and the
+    hot loops pay nothing beyond a few local counters. Flight
+    recorder events (LoadEvent, SearchEvent) are independent of this
+    switch and cost nothing unless a recording enables them.
+*/
+public final class SearchStats implements SearchStatsMBean {
+    /** Whether statistics are collected at all. */
+    static final boolean ENABLED = Boolean.getBoolean("bacon.metrics");
+
+    private static final SearchStats INSTANCE = new SearchStats();
+
+    static {
+        if (ENABLED) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    INSTANCE, new ObjectName("bacon:type=SearchStats"));
+            } catch (JMException e) {
+                System.err.printf("Warning: Can't register statistics: %s\n",
+                    e.getMessage());
+            }
+        }
+    }
+
+    // last load; written once per load so plain volatiles do
+    private volatile long lines;
+    private volatile long credits;
+    private volatile long loadNanos;
+    private volatile long vertices;
+    private volatile long edges;
+
+    // all searches since the last reset
+    private final LongAdder searches = new LongAdder();
+    private final LongAdder visited = new LongAdder();
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder allocated = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private volatile String lastFrontier = "";
+
+    private SearchStats() {}
+
+    /**
+        Record a finished load.
+        @param lines Lines read.
+        @param credits Actor credits read.
+        @param vertices Vertices in the graph.
+        @param edges Edges in the graph.
+        @param nanos Time taken.
+    */
+    static void loaded(long lines, long credits, long vertices, long edges,
+        long nanos) {
+        if (!ENABLED) {
+            return;
+        }
+        INSTANCE.lines = lines;
+        INSTANCE.credits = credits;
+        INSTANCE.vertices = vertices;
+        INSTANCE.edges = edges;
+        INSTANCE.loadNanos = nanos;
+    }
+
+    /**
+        Record a finished search.
+        @param visited Vertices visited.
+        @param scanned Edges scanned.
+        @param allocated Bytes allocated by the search.
+        @param frontier Frontier sizes per level, or null if unknown.
+        @param nanos Time taken.
+    */
+    static void searched(long visited, long scanned, long allocated,
+        String frontier, long nanos) {
+        if (!ENABLED) {
+            return;
+        }
+        INSTANCE.searches.increment();
+        INSTANCE.visited.add(visited);
+        INSTANCE.scanned.add(scanned);
+        INSTANCE.allocated.add(allocated);
+        INSTANCE.totalNanos.add(nanos);
+        INSTANCE.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (frontier != null) {
+            INSTANCE.lastFrontier = frontier;
+        }
+    }
+
+    /**
+        Heap allocated by the current thread so far.
+        @return Bytes, or zero if the JVM can't tell.
+    */
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean t =
+            ManagementFactory.getThreadMXBean();
+        if (t instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) t)
+                .getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    // Events per second, or zero before the first load.
+    private double rate(long count) {
+        long nanos = this.loadNanos;
+        return nanos == 0 ? 0.0 : count * 1e9 / nanos;
+    }
+
+    public long getLinesParsed() {
+        return this.lines;
+    }
+
+    public long getCreditsParsed() {
+        return this.credits;
+    }
+
+    public double getLinesPerSecond() {
+        return this.rate(this.lines);
+    }
+
+    public double getCreditsPerSecond() {
+        return this.rate(this.credits);
+    }
+
+    public long getVertexCount() {
+        return this.vertices;
+    }
+
+    public long getEdgeCount() {
+        return this.edges;
+    }
+
+    public long getSearches() {
+        return this.searches.sum();
+    }
+
+    public long getVerticesVisited() {
+        return this.visited.sum();
+    }
+
+    public long getEdgesScanned() {
+        return this.scanned.sum();
+    }
+
+    public long getBytesAllocated() {
+        return this.allocated.sum();
+    }
+
+    public double getMeanLatencyMillis() {
+        long n = this.searches.sum();
+        return n == 0 ? 0.0 : this.totalNanos.sum() / 1e6 / n;
+    }
+
+    public double getMaxLatencyMillis() {
+        return this.maxNanos.get() / 1e6;
+    }
+
+    public String getLastFrontierSizes() {
+        return this.lastFrontier;
+    }
+
+    public void reset() {
+        this.searches.reset();
+        this.visited.reset();
+        this.scanned.reset();
+        this.allocated.reset();
+        this.totalNanos.reset();
+        this.maxNanos.set(0);
+        this.lastFrontier = "";
+    }
+}
@@ -0,0 +1,82 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+/**
+    Management interface for loading and search statistics.
+
+    Registered as bacon:type=SearchStats when the JVM runs with
+    -Dbacon.metrics=true; see SearchStats.
+*/
+public interface SearchStatsMBean {
+    /**
+        Lines read from the database.
+        @return Line count of the last load.
+    */
+    long getLinesParsed();
+    /**
+        Actor credits read from the database.
+        @return Credit count of the last load.
+    */
+    long getCreditsParsed();
+    /**
+        Loading throughput.
+        @return Lines per second of the last load.
+    */
+    double getLinesPerSecond();
+    /**
+        Loading throughput.
+        @return Credits per second of the last load.
+    */
+    double getCreditsPerSecond();
+    /**
+        Size of the loaded graph.
+        @return Vertex count.
+    */
+    long getVertexCount();
+    /**
+        Size of the loaded graph.
+        @return Edge count.
+    */
+    long getEdgeCount();
+    /**
+        Searches run so far.
+        @return Search count.
+    */
+    long getSearches();
+    /**
+        Vertices visited over all searches.
+        @return Vertex count.
+    */
+    long getVerticesVisited();
+    /**
+        Edges scanned over all searches.
+        @return Edge count.
+    */
+    long getEdgesScanned();
+    /**
+        Heap allocated by the searching thread over all searches.
+        @return Bytes.
+    */
+    long getBytesAllocated();
+    /**
+        Average search latency.
+        @return Milliseconds.
+    */
+    double getMeanLatencyMillis();
+    /**
+        Worst search latency.
+        @return Milliseconds.
+    */
+    double getMaxLatencyMillis();
+    /**
+        Frontier sizes of the last search, one per BFS level.
+        @return Comma-separated sizes.
+    */
+    String getLastFrontierSizes();
+    /**
+        Forget all search statistics.
+    */
+    void reset();
+}
@@ -0,0 +1,452 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+    Six Degrees of Kevin Bacon over a graph split across processes.
+
+    The coordinator starts one ShardWorker JVM per shard on this
+    machine, reads the database once (numbering vertices exactly
+    like Kevin does) and streams every edge to the shard that owns
+    its start vertex. It keeps only the vertex names, never the
+    edges.
+
+    The search is level-synchronous: every shard gets the whole
+    frontier, so each knows which vertices have been reached, and
+    expands the frontier vertices it owns. Shards send back only the
+    first edge to each vertex they haven't seen reached, so the
+    coordinator handles at most one edge per shard for each newly
+    reached vertex, never the rest of the edges scanned. It keeps
+    the one with the smallest (queue position, edge slot) and tells
+    the owner its parent, so the resulting tree and the printed path
+    are the same as Kevin.solveBacon's.
+
+    Usage: java ShardCoordinator [--shards k] database actor
+
+    Extra JVM options for the workers (say, -Xmx) can be given in
+    the bacon.worker.options system property.
+*/
+public final class ShardCoordinator implements Closeable {
+    // pairs buffered per shard before an EDGES batch is sent
+    private static final int BATCH = 8192;
+    // how often to see whether workers are still starting, and how
+    // long to give them in all to connect
+    private static final int POLL_MILLIS = 200;
+    private static final long STARTUP_MILLIS = 60000;
+    // most worker JVMs main will start
+    private static final int MAX_SHARDS = 256;
+
+    private final int shards;
+    private final Process[] workers;
+    private final DataInputStream[] in;
+    private final DataOutputStream[] out;
+
+    // vertex names by id, and ids by name for looking up endpoints
+    private final ArrayList<String> names = new ArrayList<String>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+        Start the workers. If one can't be started, exits before it
+        connects or doesn't connect in time, all of them are killed.
+        @param shards Number of worker processes.
+        @throws IOException If a worker can't be started or reached.
+        @throws IllegalArgumentException If shards isn't positive.
+    */
+    ShardCoordinator(int shards) throws IOException {
+        if (shards <= 0) {
+            throw new IllegalArgumentException("Invalid shard count");
+        }
+        this.shards = shards;
+        this.workers = new Process[shards];
+        this.in = new DataInputStream[shards];
+        this.out = new DataOutputStream[shards];
+        try {
+            this.start();
+        } catch (IOException | RuntimeException e) {
+            for (int s = 0; s < shards; s++) {
+                if (this.workers[s] != null) {
+                    this.workers[s].destroy();
+                }
+                if (this.in[s] != null) {
+                    this.in[s].close();
+                }
+            }
+            throw e;
+        }
+    }
+
+    // Start a worker per shard and wait for each to connect.
+    private void start() throws IOException {
+        try (ServerSocket server = new ServerSocket(0, this.shards,
+            InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(POLL_MILLIS);
+            String java = System.getProperty("java.home") + File.separator
+                + "bin" + File.separator + "java";
+            String options = System.getProperty("bacon.worker.options", "");
+            for (int s = 0; s < this.shards; s++) {
+                ArrayList<String> cmd = new ArrayList<String>();
+                cmd.add(java);
+                for (String o : options.trim().split("\\s+")) {
+                    if (!o.isEmpty()) {
+                        cmd.add(o);
+                    }
+                }
+                cmd.add("-cp");
+                cmd.add(System.getProperty("java.class.path"));
+                cmd.add("ShardWorker");
+                cmd.add(server.getInetAddress().getHostAddress());
+                cmd.add(Integer.toString(server.getLocalPort()));
+                cmd.add(Integer.toString(s));
+                cmd.add(Integer.toString(this.shards));
+                this.workers[s] = new ProcessBuilder(cmd).inheritIO().start();
+            }
+            // workers announce their shard number when they connect
+            long deadline = System.nanoTime() + STARTUP_MILLIS * 1000000;
+            for (int c = 0; c < this.shards; c++) {
+                Socket sock = this.accept(server, deadline);
+                sock.setSoTimeout((int) STARTUP_MILLIS);
+                DataInputStream i = new DataInputStream(
+                    new BufferedInputStream(sock.getInputStream(), 1 << 16));
+                int s = i.readInt();
+                sock.setSoTimeout(0);
+                this.in[s] = i;
+                this.out[s] = new DataOutputStream(
+                    new BufferedOutputStream(sock.getOutputStream(), 1 << 16));
+            }
+        }
+    }
+
+    // Next worker connection, giving up if a worker has died or
+    // the deadline passes first.
+    private Socket accept(ServerSocket server, long deadline)
+        throws IOException {
+        while (true) {
+            try {
+                return server.accept();
+            } catch (SocketTimeoutException e) {
+                for (int s = 0; s < this.shards; s++) {
+                    if (!this.workers[s].isAlive() && this.in[s] == null) {
+                        throw new IOException("Worker " + s + " exited with"
+                            + " status " + this.workers[s].exitValue());
+                    }
+                }
+                if (System.nanoTime() - deadline > 0) {
+                    throw new IOException("Workers didn't connect in "
+                        + STARTUP_MILLIS + " ms");
+                }
+            }
+        }
+    }
+
+    /**
+        Id of a vertex.
+        @param name Movie or actor name.
+        @return Its id, or null if it isn't in the database.
+    */
+    Integer find(String name) {
+        return this.ids.get(name);
+    }
+
+    /**
+        Name of a vertex.
+        @param v Vertex id.
+        @return Its name.
+    */
+    String name(int v) {
+        return this.names.get(v);
+    }
+
+    private int owner(int v) {
+        return v % this.shards;
+    }
+
+    // Find or create the id for a name.
+    private int id(String name) {
+        Integer i = this.ids.get(name);
+        if (i == null) {
+            i = this.names.size();
+            this.names.add(name);
+            this.ids.put(name, i);
+        }
+        return i;
+    }
+
+    /**
+        Read the database and hand every edge to its shard. Edges go
+        out in the order Kevin inserts them so adjacency order on the
+        shards matches SparseGraph's.
+        @param filename Database file.
+        @throws IOException If the file can't be read or a worker fails.
+    */
+    void load(String filename) throws IOException {
+        int[][] buf = new int[this.shards][2 * BATCH];
+        int[] len = new int[this.shards];
+        try (CastReader reader = new CastReader(filename)) {
+            String[] data;
+            while ((data = reader.next()) != null) {
+                int m = this.id(data[0]);
+                for (int i = 1; i < data.length; i++) {
+                    int a = this.id(data[i]);
+                    this.edge(buf, len, m, a);
+                    this.edge(buf, len, a, m);
+                }
+            }
+        }
+        for (int s = 0; s < this.shards; s++) {
+            this.flush(buf, len, s);
+            this.out[s].flush();
+        }
+    }
+
+    private void edge(int[][] buf, int[] len, int from, int to)
+        throws IOException {
+        int s = this.owner(from);
+        buf[s][len[s]++] = from;
+        buf[s][len[s]++] = to;
+        if (len[s] == buf[s].length) {
+            this.flush(buf, len, s);
+        }
+    }
+
+    private void flush(int[][] buf, int[] len, int s) throws IOException {
+        if (len[s] == 0) {
+            return;
+        }
+        this.out[s].writeByte(ShardWorker.EDGES);
+        this.out[s].writeInt(len[s] / 2);
+        for (int i = 0; i < len[s]; i++) {
+            this.out[s].writeInt(buf[s][i]);
+        }
+        len[s] = 0;
+    }
+
+    /**
+        Shortest path between two vertices.
+        @param root Id to search from.
+        @param target Id to search for.
+        @return Ids from target back to root, or null if the target
+            can't be reached.
+        @throws IOException If a worker fails.
+    */
+    int[] solve(int root, int target) throws IOException {
+        for (int s = 0; s < this.shards; s++) {
+            this.out[s].writeByte(ShardWorker.ROOT);
+            this.out[s].writeInt(root);
+            this.out[s].flush();
+        }
+
+        BitSet reached = new BitSet(this.names.size());
+        reached.set(root);
+        int[] frontier = {root};
+        int level = 0;
+        boolean found = root == target;
+        while (!found && frontier.length > 0) {
+            level++;
+
+            // expand: the whole frontier to everyone, in queue order
+            for (int s = 0; s < this.shards; s++) {
+                this.out[s].writeByte(ShardWorker.EXPAND);
+                this.out[s].writeInt(frontier.length);
+                for (int v : frontier) {
+                    this.out[s].writeInt(v);
+                }
+                this.out[s].flush();
+            }
+
+            // first discoveries, bucketed by queue position; a bucket
+            // comes from one shard, which sends it in slot order
+            ArrayList<int[]> replies = new ArrayList<int[]>();
+            int[] start = new int[frontier.length + 1];
+            int total = 0;
+            for (int s = 0; s < this.shards; s++) {
+                int r = this.in[s].readInt();
+                int[] b = new int[3 * r];
+                for (int j = 0; j < 3 * r; j += 3) {
+                    b[j] = this.in[s].readInt();
+                    b[j + 1] = this.in[s].readInt();
+                    b[j + 2] = this.in[s].readInt();
+                    start[b[j + 2] + 1]++;
+                }
+                replies.add(b);
+                total += r;
+            }
+            for (int p = 0; p < frontier.length; p++) {
+                start[p + 1] += start[p];
+            }
+            int[] next = new int[total];
+            int[] parents = new int[total];
+            for (int[] b : replies) {
+                for (int j = 0; j < b.length; j += 3) {
+                    int at = start[b[j + 2]]++;
+                    next[at] = b[j];
+                    parents[at] = b[j + 1];
+                }
+            }
+
+            // two shards may both have found a vertex: the first in
+            // queue order wins, and its owner records the parent
+            int t = 0;
+            int[] claims = new int[this.shards];
+            for (int j = 0; j < total; j++) {
+                if (!reached.get(next[j])) {
+                    reached.set(next[j]);
+                    next[t] = next[j];
+                    parents[t++] = parents[j];
+                    claims[this.owner(next[j])]++;
+                    found |= next[j] == target;
+                }
+            }
+            for (int s = 0; s < this.shards; s++) {
+                this.out[s].writeByte(ShardWorker.CLAIM);
+                this.out[s].writeInt(claims[s]);
+            }
+            for (int j = 0; j < t; j++) {
+                DataOutputStream o = this.out[this.owner(next[j])];
+                o.writeInt(next[j]);
+                o.writeInt(parents[j]);
+            }
+            for (int s = 0; s < this.shards; s++) {
+                this.out[s].flush();
+            }
+            frontier = Arrays.copyOf(next, t);
+        }
+        if (!found) {
+            return null;
+        }
+
+        // walk back up the tree one shard lookup at a time
+        int[] path = new int[level + 1];
+        path[0] = target;
+        for (int j = 1; j <= level; j++) {
+            DataOutputStream o = this.out[this.owner(path[j - 1])];
+            o.writeByte(ShardWorker.PARENT);
+            o.writeInt(path[j - 1]);
+            o.flush();
+            path[j] = this.in[this.owner(path[j - 1])].readInt();
+        }
+        return path;
+    }
+
+    /**
+        Tell the workers to exit and wait for them. A worker that
+        can't be told, or isn't waited for because this thread is
+        interrupted, is killed.
+        @throws IOException If a worker couldn't be told to quit.
+    */
+    @Override
+    public void close() throws IOException {
+        IOException failed = null;
+        for (int s = 0; s < this.shards; s++) {
+            try {
+                this.out[s].writeByte(ShardWorker.QUIT);
+                this.out[s].flush();
+            } catch (IOException e) {
+                this.workers[s].destroy();
+                if (failed == null) {
+                    failed = e;
+                } else {
+                    failed.addSuppressed(e);
+                }
+            }
+        }
+        try {
+            for (Process p : this.workers) {
+                p.waitFor();
+            }
+        } catch (InterruptedException e) {
+            for (Process p : this.workers) {
+                p.destroy();
+            }
+            Thread.currentThread().interrupt();
+        }
+        if (failed != null) {
+            throw failed;
+        }
+    }
+
+    // Print how to call us and quit.
+    private static void usage() {
+        System.out.printf("Usage: java ShardCoordinator [--shards k]"
+            + " database actor\n");
+        System.exit(1);
+    }
+
+    // The number of shards asked for, from 1 to MAX_SHARDS; anything
+    // else gets the usage line.
+    private static int count(String arg) {
+        try {
+            int n = Integer.parseInt(arg);
+            if (n > 0 && n <= MAX_SHARDS) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // fall through to the usage line
+        }
+        usage();
+        return 0;
+    }
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws IOException If database file cannot be read properly.
+    */
+    public static void main(String[] args) throws IOException {
+        int shards = 4;
+        int first = 0;
+        if (args.length > 1 && args[0].equals("--shards")) {
+            shards = count(args[1]);
+            first = 2;
+        }
+        if (args.length - first < 2) {
+            usage();
+        }
+
+        // closing the coordinator stops the workers; a failure there
+        // is added to whatever went wrong first rather than hiding it
+        int status = 0;
+        try (ShardCoordinator c = new ShardCoordinator(shards)) {
+            c.load(args[first]);
+            Integer actor = c.find(args[first + 1]);
+            Integer bacon = c.find("Bacon, Kevin");
+            if (actor == null) {
+                System.out.printf("Error: Can't find %s in database.\n",
+                    args[first + 1]);
+                status = 1;
+            } else if (bacon == null) {
+                System.out.printf("Error: Can't find Bacon, Kevin in"
+                    + " database.\n");
+                status = 1;
+            } else {
+                int[] path = c.solve(bacon, actor);
+                if (path == null) {
+                    System.out.printf("No path from %s to %s.\n",
+                        args[first + 1], "Bacon, Kevin");
+                } else {
+                    for (int v : path) {
+                        System.out.println(c.name(v));
+                    }
+                }
+            }
+        }
+        System.exit(status);
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+    One shard of a partitioned movie/actor graph.
+
+    Vertex v belongs to shard v % shards and is stored there under
+    local index v / shards. A worker holds the outgoing edges and
+    BFS parents of its own vertices, plus one bit per vertex of the
+    whole graph saying whether the search has reached it. It
+    connects back to the ShardCoordinator that started it and then
+    answers commands until told to quit:
+
+    EDGES: count, then (from, to) pairs; append edges to owned
+    vertices, in the order given.
+
+    ROOT: id; start a new search from that vertex.
+
+    EXPAND: count, then the ids of the whole frontier in queue
+    order. All of them are marked reached; the owned ones are
+    expanded. Reply with count and a (neighbour, parent, position)
+    triple for the first edge to each neighbour not reached yet,
+    where position is the parent's place in the frontier.
+
+    CLAIM: count, then (vertex, parent) pairs for owned vertices
+    the coordinator picked; record their parents. No reply.
+
+    PARENT: id; reply with its parent, or -1.
+
+    QUIT: exit.
+
+    Frontier vertices are expanded in queue order and their edges
+    in slot order, so the first edge to a vertex here is the first
+    this shard could offer; the coordinator keeps the one with the
+    smallest position over all shards, which is the first discovery
+    in queue order and gives exactly the BFS tree Kevin builds.
+
+    Usage: java ShardWorker host port shard shards
+*/
+public final class ShardWorker {
+    static final byte EDGES = 1;
+    static final byte ROOT = 2;
+    static final byte EXPAND = 3;
+    static final byte CLAIM = 4;
+    static final byte PARENT = 5;
+    static final byte QUIT = 6;
+
+    private final int shard;
+    private final int shards;
+
+    // per owned vertex, by local index
+    private int[][] adj = new int[1024][];
+    private int[] deg = new int[1024];
+    private int[] parent = new int[1024];
+    private int local;
+
+    // every vertex reached by the current search, on any shard
+    private final BitSet reached = new BitSet();
+
+    private ShardWorker(int shard, int shards) {
+        this.shard = shard;
+        this.shards = shards;
+    }
+
+    // Local index of an owned vertex, growing the arrays if needed.
+    private int local(int v) {
+        int i = v / this.shards;
+        if (i >= this.deg.length) {
+            int n = Math.max(i + 1, 2 * this.deg.length);
+            this.adj = Arrays.copyOf(this.adj, n);
+            this.deg = Arrays.copyOf(this.deg, n);
+            this.parent = Arrays.copyOf(this.parent, n);
+        }
+        if (i >= this.local) {
+            // vertices we haven't seen yet are unvisited
+            Arrays.fill(this.parent, this.local, i + 1, -1);
+            this.local = i + 1;
+        }
+        return i;
+    }
+
+    private void edge(int from, int to) {
+        int i = this.local(from);
+        if (this.adj[i] == null) {
+            this.adj[i] = new int[4];
+        } else if (this.deg[i] == this.adj[i].length) {
+            this.adj[i] = Arrays.copyOf(this.adj[i], 2 * this.deg[i]);
+        }
+        this.adj[i][this.deg[i]++] = to;
+    }
+
+    private void root(int v) {
+        Arrays.fill(this.parent, 0, this.local, -1);
+        this.reached.clear();
+        if (v % this.shards == this.shard) {
+            this.parent[this.local(v)] = v;
+        }
+    }
+
+    private void expand(DataInputStream in, DataOutputStream out)
+        throws IOException {
+        int count = in.readInt();
+        int[] frontier = new int[count];
+        for (int p = 0; p < count; p++) {
+            frontier[p] = in.readInt();
+            this.reached.set(frontier[p]);
+        }
+        // a neighbour is marked as soon as it's found: every one
+        // found here is in the next frontier whichever shard wins it
+        int[] found = new int[48];
+        int r = 0;
+        for (int p = 0; p < count; p++) {
+            int u = frontier[p];
+            if (u % this.shards != this.shard) {
+                continue;
+            }
+            int i = u / this.shards;
+            for (int k = 0; k < this.deg[i]; k++) {
+                int w = this.adj[i][k];
+                if (this.reached.get(w)) {
+                    continue;
+                }
+                this.reached.set(w);
+                if (r == found.length) {
+                    found = Arrays.copyOf(found, 2 * r);
+                }
+                found[r++] = w;
+                found[r++] = u;
+                found[r++] = p;
+            }
+        }
+        out.writeInt(r / 3);
+        for (int j = 0; j < r; j++) {
+            out.writeInt(found[j]);
+        }
+    }
+
+    private void claim(DataInputStream in) throws IOException {
+        for (int j = in.readInt(); j > 0; j--) {
+            int w = in.readInt();
+            this.parent[this.local(w)] = in.readInt();
+        }
+    }
+
+    // Answer commands until QUIT or the coordinator goes away.
+    private void serve(DataInputStream in, DataOutputStream out)
+        throws IOException {
+        while (true) {
+            byte op;
+            try {
+                op = in.readByte();
+            } catch (EOFException e) {
+                return;
+            }
+            switch (op) {
+                case EDGES:
+                    for (int j = in.readInt(); j > 0; j--) {
+                        this.edge(in.readInt(), in.readInt());
+                    }
+                    break;
+                case ROOT:
+                    this.root(in.readInt());
+                    break;
+                case EXPAND:
+                    this.expand(in, out);
+                    out.flush();
+                    break;
+                case CLAIM:
+                    this.claim(in);
+                    break;
+                case PARENT:
+                    int i = in.readInt() / this.shards;
+                    out.writeInt(i < this.local ? this.parent[i] : -1);
+                    out.flush();
+                    break;
+                case QUIT:
+                    return;
+                default:
+                    throw new IOException("Unknown command " + op);
+            }
+        }
+    }
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws IOException If the coordinator can't be reached.
+    */
+    public static void main(String[] args) throws IOException {
+        int shard = Integer.parseInt(args[2]);
+        ShardWorker w = new ShardWorker(shard, Integer.parseInt(args[3]));
+        try (Socket s = new Socket(args[0], Integer.parseInt(args[1]))) {
+            DataInputStream in = new DataInputStream(
+                new BufferedInputStream(s.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(s.getOutputStream(), 1 << 16));
+            out.writeInt(shard);
+            out.flush();
+            w.serve(in, out);
+        }
+    }
+}
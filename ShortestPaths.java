@@ -0,0 +1,241 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+    All shortest paths between two vertices.
+
+    One BFS from the root lays the graph out in levels; an edge
+    from level L to level L + 1 belongs to the shortest path DAG.
+    While the BFS runs we also count, for every vertex, how many
+    shortest paths reach it from the root. Counts grow
+    exponentially with distance, so they're kept in longs until
+    one overflows and in BigIntegers from then on.
+
+    Paths are never materialised all at once: the iterator walks
+    the DAG backwards from the target one path at a time, and
+    sample() draws paths uniformly at random by choosing each
+    predecessor with probability proportional to its count.
+
+    Predecessors are found through outgoing edges, so the graph
+    has to be symmetric, which is what Kevin builds.
+
+    @param <V> Type of vertex element
+*/
+public final class ShortestPaths<V> implements Iterable<int[]> {
+    private final GraphSnapshot<V> g;
+    private final int target;
+    private final int[] dist;
+
+    // number of shortest paths from root; big is null unless small
+    // overflowed somewhere
+    private long[] small;
+    private BigInteger[] big;
+
+    /**
+        Lay out the shortest path DAG and count paths.
+        @param g Snapshot of a symmetric graph.
+        @param root Vertex id paths start from.
+        @param target Vertex id paths end at.
+    */
+    public ShortestPaths(GraphSnapshot<V> g, int root, int target) {
+        this.g = g;
+        this.target = target;
+        int n = g.size();
+        this.dist = new int[n];
+        Arrays.fill(this.dist, -1);
+        this.small = new long[n];
+
+        // one BFS, stopping at the target's level
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        this.dist[root] = 0;
+        this.small[root] = 1;
+        queue[tail++] = root;
+        while (head < tail) {
+            int u = queue[head++];
+            if (this.dist[target] >= 0 && this.dist[u] >= this.dist[target]) {
+                break;
+            }
+            for (int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+                int w = g.targets[k];
+                if (this.dist[w] < 0) {
+                    this.dist[w] = this.dist[u] + 1;
+                    queue[tail++] = w;
+                }
+                if (this.dist[w] == this.dist[u] + 1) {
+                    this.add(w, u);
+                }
+            }
+        }
+    }
+
+    // Add the path count of u to that of w.
+    private void add(int w, int u) {
+        if (this.big == null) {
+            long s = this.small[w] + this.small[u];
+            if (s >= 0) {
+                this.small[w] = s;
+                return;
+            }
+            // overflow, switch everything over to BigInteger
+            this.big = new BigInteger[this.small.length];
+            for (int i = 0; i < this.small.length; i++) {
+                if (this.small[i] != 0) {
+                    this.big[i] = BigInteger.valueOf(this.small[i]);
+                }
+            }
+            this.small = null;
+        }
+        this.big[w] = this.big[w] == null ? this.big[u]
+            : this.big[w].add(this.big[u]);
+    }
+
+    // Number of shortest paths from root to v.
+    private BigInteger sigma(int v) {
+        if (this.big == null) {
+            return BigInteger.valueOf(this.small[v]);
+        }
+        return this.big[v] == null ? BigInteger.ZERO : this.big[v];
+    }
+
+    /**
+        Length of the shortest paths.
+        @return Number of hops, or -1 if target can't be reached.
+    */
+    public int length() {
+        return this.dist[this.target];
+    }
+
+    /**
+        Number of distinct shortest paths.
+        @return Path count, zero if target can't be reached.
+    */
+    public BigInteger count() {
+        return this.sigma(this.target);
+    }
+
+    // Is u a predecessor of v in the DAG?
+    private boolean before(int u, int v) {
+        return this.dist[u] >= 0 && this.dist[u] == this.dist[v] - 1;
+    }
+
+    /**
+        Enumerate shortest paths lazily.
+        @return Iterator over paths given as vertex ids from target
+            back to root; each call to next() returns a new array.
+    */
+    public Iterator<int[]> iterator() {
+        return new Iterator<int[]>() {
+            private final int d = ShortestPaths.this.length();
+            // p[i] is the vertex on level d - i, c[i] the edge slot
+            // of p[i - 1] we took to get there
+            private final int[] p = new int[Math.max(this.d + 1, 1)];
+            private final int[] c = new int[Math.max(this.d + 1, 1)];
+            private boolean ready = this.d >= 0;
+            private boolean done = this.d < 0;
+
+            {
+                if (this.ready) {
+                    this.descend(0);
+                }
+            }
+
+            // Fill levels after i with the first predecessor each.
+            private void descend(int i) {
+                if (i == 0) {
+                    this.p[0] = ShortestPaths.this.target;
+                }
+                for (int j = i + 1; j <= this.d; j++) {
+                    this.c[j] = this.next(this.p[j - 1],
+                        ShortestPaths.this.g.offsets[this.p[j - 1]]);
+                    this.p[j] = ShortestPaths.this.g.targets[this.c[j]];
+                }
+            }
+
+            // Slot of first predecessor of v at or after slot k, or -1.
+            private int next(int v, int k) {
+                GraphSnapshot<V> g = ShortestPaths.this.g;
+                for (; k < g.offsets[v + 1]; k++) {
+                    if (ShortestPaths.this.before(g.targets[k], v)) {
+                        return k;
+                    }
+                }
+                return -1;
+            }
+
+            // Move to the next path in depth-first order.
+            private boolean advance() {
+                for (int i = this.d; i >= 1; i--) {
+                    int k = this.next(this.p[i - 1], this.c[i] + 1);
+                    if (k >= 0) {
+                        this.c[i] = k;
+                        this.p[i] = ShortestPaths.this.g.targets[k];
+                        this.descend(i);
+                        return true;
+                    }
+                }
+                return false;
+            }
+
+            public boolean hasNext() {
+                if (!this.ready && !this.done) {
+                    this.ready = this.advance();
+                    this.done = !this.ready;
+                }
+                return this.ready;
+            }
+
+            public int[] next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                this.ready = false;
+                return this.p.clone();
+            }
+        };
+    }
+
+    /**
+        Draw one shortest path uniformly at random.
+        @param rnd Source of randomness.
+        @return Vertex ids from target back to root, or null if the
+            target can't be reached.
+    */
+    public int[] sample(Random rnd) {
+        int d = this.length();
+        if (d < 0) {
+            return null;
+        }
+        int[] p = new int[d + 1];
+        p[0] = this.target;
+        for (int i = 1; i <= d; i++) {
+            int v = p[i - 1];
+            // pick predecessor u with probability sigma(u) / sigma(v)
+            BigInteger total = this.sigma(v);
+            BigInteger r;
+            do {
+                r = new BigInteger(total.bitLength(), rnd);
+            } while (r.compareTo(total) >= 0);
+            for (int k = this.g.offsets[v]; k < this.g.offsets[v + 1]; k++) {
+                int u = this.g.targets[k];
+                if (this.before(u, v)) {
+                    r = r.subtract(this.sigma(u));
+                    if (r.signum() < 0) {
+                        p[i] = u;
+                        break;
+                    }
+                }
+            }
+        }
+        return p;
+    }
+}
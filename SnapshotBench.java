@@ -0,0 +1,81 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.IOException;
+import java.util.Random;
+import graphs.*;
+
+/**
+    Benchmark for building GraphSnapshots and their vertex orderings.
+
+    Loads a database both through Kevin's graph and straight into
+    a snapshot with SnapshotBuilder, timing each. Then takes a
+    snapshot in every Order and times full breadth-first searches
+    from the same random roots in each, so the only difference
+    between runs is memory layout.
+
+    Usage: java SnapshotBench database [searches]
+*/
+public final class SnapshotBench {
+    // Shut up checkstyle.
+    private SnapshotBench() {}
+
+    /**
+        Main method.
+        @param args Command line arguments.
+        @throws IOException If database file cannot be read properly.
+    */
+    public static void main(String[] args) throws IOException {
+        int searches = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        long start = System.nanoTime();
+        Graph<String, String> g = Kevin.load(args[0]);
+        GraphSnapshot<String> base = GraphSnapshot.of(g);
+        long viaGraph = System.nanoTime() - start;
+        start = System.nanoTime();
+        GraphSnapshot<String> direct = SnapshotBuilder.load(args[0]);
+        long viaBuilder = System.nanoTime() - start;
+        int n = base.size();
+        System.out.printf("%d vertices, %d edges, %d searches\n", n,
+            base.edgeCount(), searches);
+        System.out.printf("load   graph + snapshot %6d ms, builder %6d ms"
+            + " (%d vertices)\n", viaGraph / 1000000, viaBuilder / 1000000,
+            direct.size());
+
+        // pick roots once so every order searches from the same vertices
+        Random rnd = new Random(42);
+        int[] roots = new int[searches];
+        for (int i = 0; i < searches; i++) {
+            roots[i] = rnd.nextInt(n);
+        }
+
+        for (GraphSnapshot.Order order : GraphSnapshot.Order.values()) {
+            start = System.nanoTime();
+            GraphSnapshot<String> s = GraphSnapshot.of(g, order);
+            long build = System.nanoTime() - start;
+
+            // map roots to ids in this snapshot
+            int[] ids = new int[searches];
+            for (int j = 0; j < searches; j++) {
+                ids[j] = s.id(base.position(roots[j]));
+            }
+
+            int[] dist = new int[n];
+            int[] queue = new int[n];
+            long reached = 0;
+            // warm up, then measure
+            for (int j = 0; j < searches; j++) {
+                s.distances(ids[j], dist, queue);
+            }
+            start = System.nanoTime();
+            for (int j = 0; j < searches; j++) {
+                reached += s.distances(ids[j], dist, queue);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-6s build %6d ms, BFS %8.3f ms avg,"
+                + " %d reached\n", order.name().toLowerCase(), build / 1000000,
+                nanos / 1e6 / searches, reached);
+        }
+    }
+}
@@ -0,0 +1,199 @@
+/**
+ * @author: Vincent Yan
+ * @email: vyan1@jhu.edu
+*/
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+    Builds a GraphSnapshot straight from a list of credits.
+
+    Building a SparseGraph first and snapshotting it appends every
+    edge to a growing per-vertex list and then copies everything
+    again. Here the parser only numbers vertices and records
+    (movie, actor) pairs; build() then makes the CSR arrays in two
+    parallel passes over the credits:
+
+    1. Each of P workers counts the degrees its slice of credits
+       contributes, then a pass over vertex ranges sums those into
+       degrees and turns each worker's counts into its starting
+       slot within the vertex's list. Offsets are the prefix sums of
+       the degrees (Arrays.parallelPrefix).
+
+    2. Each worker scatters its credits into the preallocated
+       targets array at offsets[v] plus its own cursor for v.
+
+    No locks or atomics are needed since every worker owns its slots,
+    and because earlier slices get earlier slots the lists come out
+    in input order: the snapshot is identical to
+    GraphSnapshot.of(Kevin.load(...)), only built in time about
+    credits / cores. The per-worker counts take P ints per vertex,
+    so P is capped to keep them no bigger than the targets array
+    and within half the free heap; a database with few credits per
+    vertex gets fewer workers rather than P copies of its vertices.
+
+    @param <V> Type of vertex element
+*/
+public final class SnapshotBuilder<V> {
+    private final Map<V, Integer> ids = new HashMap<>();
+    private final ArrayList<V> elements = new ArrayList<V>();
+    private int[] movies = new int[1024];
+    private int[] actors = new int[1024];
+    private int credits;
+
+    /**
+        Find or create the vertex for an element.
+        @param v Element to look up.
+        @return Its vertex id; new elements are numbered in order.
+    */
+    public int vertex(V v) {
+        Integer i = this.ids.get(v);
+        if (i == null) {
+            i = this.elements.size();
+            this.elements.add(v);
+            this.ids.put(v, i);
+        }
+        return i;
+    }
+
+    /**
+        Vertex ids given out so far.
+        @return Id of every element; the builder's own map, so it
+            must not be changed.
+    */
+    Map<V, Integer> ids() {
+        return this.ids;
+    }
+
+    /**
+        Record that an actor appears in a movie. Gives an edge
+        each way; credits are assumed to be distinct.
+        @param movie Vertex id of the movie.
+        @param actor Vertex id of the actor.
+        @throws IllegalArgumentException If either id is unknown.
+    */
+    public void credit(int movie, int actor) {
+        int n = this.elements.size();
+        if (movie < 0 || movie >= n || actor < 0 || actor >= n) {
+            throw new IllegalArgumentException("Invalid vertex id");
+        }
+        if (this.credits == this.movies.length) {
+            this.movies = Arrays.copyOf(this.movies, 2 * this.credits);
+            this.actors = Arrays.copyOf(this.actors, 2 * this.credits);
+        }
+        this.movies[this.credits] = movie;
+        this.actors[this.credits] = actor;
+        this.credits++;
+    }
+
+    /**
+        Number of credits recorded.
+        @return Credit count.
+    */
+    public int credits() {
+        return this.credits;
+    }
+
+    /**
+        Build the snapshot, using the common fork/join pool.
+        @return Snapshot with an edge each way for every credit.
+    */
+    public GraphSnapshot<V> build() {
+        return this.build(ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+        Build the snapshot.
+        @param workers Most credit slices to process in parallel.
+        @return Snapshot with an edge each way for every credit.
+        @throws IllegalArgumentException If workers isn't positive.
+    */
+    public GraphSnapshot<V> build(int workers) {
+        if (workers <= 0) {
+            throw new IllegalArgumentException("Need a worker");
+        }
+        int n = this.elements.size();
+        int c = this.credits;
+        // a count per vertex for every slice: no more of those than
+        // fit in the room targets takes, nor than half the free heap
+        Runtime rt = Runtime.getRuntime();
+        long free = rt.maxMemory() - rt.totalMemory() + rt.freeMemory();
+        long room = Math.min(2L * c, free / 2 / Integer.BYTES)
+            / Math.max(n, 1);
+        int p = (int) Math.max(1, Math.min(Math.min(workers, c), room));
+        int[] movie = this.movies;
+        int[] actor = this.actors;
+
+        // pass one: per-slice degree counts
+        int[][] cursor = new int[p][];
+        IntStream.range(0, p).parallel().forEach(t -> {
+            int[] count = new int[n];
+            for (int k = slice(c, p, t); k < slice(c, p, t + 1); k++) {
+                count[movie[k]]++;
+                count[actor[k]]++;
+            }
+            cursor[t] = count;
+        });
+
+        // degrees, and each slice's first slot within every list
+        int[] offsets = new int[n + 1];
+        IntStream.range(0, p).parallel().forEach(r -> {
+            for (int v = slice(n, p, r); v < slice(n, p, r + 1); v++) {
+                int sum = 0;
+                for (int t = 0; t < p; t++) {
+                    int d = cursor[t][v];
+                    cursor[t][v] = sum;
+                    sum += d;
+                }
+                offsets[v + 1] = sum;
+            }
+        });
+        Arrays.parallelPrefix(offsets, Integer::sum);
+
+        // pass two: scatter into place
+        int[] targets = new int[offsets[n]];
+        IntStream.range(0, p).parallel().forEach(t -> {
+            int[] at = cursor[t];
+            for (int k = slice(c, p, t); k < slice(c, p, t + 1); k++) {
+                int m = movie[k];
+                int a = actor[k];
+                targets[offsets[m] + at[m]++] = a;
+                targets[offsets[a] + at[a]++] = m;
+            }
+        });
+
+        return GraphSnapshot.of(this.elements, offsets, targets);
+    }
+
+    // Start of slice t when splitting count items into parts slices.
+    private static int slice(int count, int parts, int t) {
+        return (int) ((long) count * t / parts);
+    }
+
+    /**
+        Read a database straight into a snapshot.
+        @param filename Database to read, plain or gzipped.
+        @return Snapshot of movies and actors, numbered like Kevin's.
+        @throws IOException If database file cannot be read properly.
+    */
+    public static GraphSnapshot<String> load(String filename)
+        throws IOException {
+        SnapshotBuilder<String> b = new SnapshotBuilder<String>();
+        try (CastReader reader = new CastReader(filename)) {
+            String[] data;
+            while ((data = reader.next()) != null) {
+                int m = b.vertex(data[0]);
+                for (int i = 1; i < data.length; i++) {
+                    b.credit(m, b.vertex(data[i]));
+                }
+            }
+        }
+        return b.build();
+    }
+}
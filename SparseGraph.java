@@ -5,6 +5,8 @@
 
 
 import java.util.ArrayList;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 import graphs.*;
 
 /**
@@ -16,6 +18,8 @@ import graphs.*;
 public class SparseGraph<V, E> implements Graph<V, E> {
     private ArrayList<Vertex<V>> allVertices = new ArrayList<Vertex<V>>();
     private ArrayList<Edge<E>> allEdges = new ArrayList<Edge<E>>();
+    // vertices by id, null once removed; ids are never reused
+    private ArrayList<VertexNode<V>> byId = new ArrayList<VertexNode<V>>();
 
     private class VertexNode<V> implements Vertex<V> {
         public ArrayList<Edge<E>> incomingEdges = new ArrayList<Edge<E>>();
@@ -23,6 +27,7 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         public V value;
         public Graph<V, E> manufacturer;
         public Object labelV;
+        public int id;
 
         public V get() {
             return this.value;
@@ -60,6 +65,13 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         return n;
     }
 
+    private VertexNode<V> validate(int id) {
+        if (id < 0 || id >= this.byId.size() || this.byId.get(id) == null) {
+            throw new IllegalArgumentException("Invalid vertex id");
+        }
+        return this.byId.get(id);
+    }
+
     private EdgeNode<E> validate(Edge<E> e) {
         if (e == null || !(e instanceof SparseGraph.EdgeNode)) {
             throw new IllegalArgumentException("Invalid edge position");
@@ -80,7 +92,9 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         VertexNode<V> newV = new VertexNode<V>();
         newV.value = v;
         newV.manufacturer = this;
+        newV.id = this.byId.size();
         this.allVertices.add(newV);
+        this.byId.add(newV);
         return newV;
     }
 
@@ -139,6 +153,7 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         n.value = null;
         n.manufacturer = null;
         this.allVertices.remove(n);
+        this.byId.set(n.id, null);
         return val;
     }
 
@@ -211,6 +226,76 @@ public class SparseGraph<V, E> implements Graph<V, E> {
         return n.incomingEdges;
     }
 
+    /**
+        Visit out-neighbours of vertex.
+        @param v Vertex position to explore.
+        @param f Called with the vertex position each outgoing
+            edge leads to, in the order outgoing() would return.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public void forEachOutNeighbour(Vertex<V> v, Consumer<? super Vertex<V>> f)
+        throws IllegalArgumentException {
+        ArrayList<Edge<E>> out = this.validate(v).outgoingEdges;
+        for (int i = 0; i < out.size(); i++) {
+            // edge lists only hold EdgeNodes made by insert()
+            @SuppressWarnings("unchecked")
+            EdgeNode<E> e = (EdgeNode<E>) out.get(i);
+            f.accept(e.toV);
+        }
+    }
+
+    /**
+        Visit out-neighbours of vertex by id.
+        @param v Id of vertex to explore.
+        @param f Called with the id of the vertex each outgoing
+            edge leads to, in the order outgoing() would return.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    public void forEachOutNeighbour(int v, IntConsumer f)
+        throws IllegalArgumentException {
+        ArrayList<Edge<E>> out = this.validate(v).outgoingEdges;
+        for (int i = 0; i < out.size(); i++) {
+            // edge lists only hold EdgeNodes made by insert()
+            @SuppressWarnings("unchecked")
+            EdgeNode<E> e = (EdgeNode<E>) out.get(i);
+            f.accept(e.toV.id);
+        }
+    }
+
+    /**
+        Id of vertex.
+        @param v Vertex position to query.
+        @return Id of the vertex.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    public int id(Vertex<V> v)
+        throws IllegalArgumentException {
+        return this.validate(v).id;
+    }
+
+    /**
+        Vertex with id.
+        @param id Id to look up.
+        @return Vertex position with that id.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    public Vertex<V> vertex(int id)
+        throws IllegalArgumentException {
+        return this.validate(id);
+    }
+
+    /**
+        Upper bound on vertex ids.
+        @return One more than the largest id handed out so far.
+    */
+    public int idBound() {
+        return this.byId.size();
+    }
+
     /**
         Start vertex of edge.
         @param e Edge position to explore.
@@ -6,7 +6,31 @@
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator; 
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import org.junit.experimental.theories.DataPoint;
 import org.junit.experimental.theories.Theories;
 import org.junit.experimental.theories.Theory;
@@ -28,6 +52,16 @@ public class TestGraph {
         }
     };
 
+    @DataPoint
+    public static final GraphSnapshot.Order NoOrder = GraphSnapshot.Order.NONE;
+
+    @DataPoint
+    public static final GraphSnapshot.Order DegreeOrder =
+        GraphSnapshot.Order.DEGREE;
+
+    @DataPoint
+    public static final GraphSnapshot.Order BfsOrder = GraphSnapshot.Order.BFS;
+
     @Theory
     public void insertVertex(Fixture fix) {
         Graph<String, String> a = fix.init();
@@ -286,6 +320,47 @@ public class TestGraph {
         assertEquals(iter2.hasNext(), false);
     }
 
+    @Theory
+    public void forEachOutNeighbourVertices(Fixture fix) {
+        Graph<String, String> a = fix.init();
+        Vertex<String> peter = a.insert("Peter");
+        Vertex<String> andy = a.insert("Andy");
+        Vertex<String> vincent = a.insert("Vincent");
+        a.insert(peter, andy, "1");
+        a.insert(peter, vincent, "2");
+        a.insert(andy, vincent, "3");
+        ArrayList<Vertex<String>> seen = new ArrayList<Vertex<String>>();
+        a.forEachOutNeighbour(peter, seen::add);
+        assertEquals(seen.size(), 2);
+        assertEquals(seen.get(0), andy);
+        assertEquals(seen.get(1), vincent);
+    }
+
+    @Theory
+    public void forEachOutNeighbourIds(Fixture fix) {
+        Graph<String, String> a = fix.init();
+        Vertex<String> peter = a.insert("Peter");
+        Vertex<String> andy = a.insert("Andy");
+        Vertex<String> vincent = a.insert("Vincent");
+        a.insert(peter, andy, "1");
+        a.insert(peter, vincent, "2");
+        ArrayList<Integer> seen = new ArrayList<Integer>();
+        a.forEachOutNeighbour(a.id(peter), seen::add);
+        assertEquals(seen.size(), 2);
+        assertEquals(a.vertex(seen.get(0)), andy);
+        assertEquals(a.vertex(seen.get(1)), vincent);
+        assertEquals(a.idBound() > a.id(vincent), true);
+    }
+
+    @Theory @Test(expected = IllegalArgumentException.class)
+    public void vertexIdFailCuzRemoved(Fixture fix) {
+        Graph<String, String> a = fix.init();
+        Vertex<String> peter = a.insert("Peter");
+        int id = a.id(peter);
+        a.remove(peter);
+        a.vertex(id);
+    }
+
     @Theory
     public void fromVertexOfEdge(Fixture fix) {
         Graph<String, String> a = fix.init();
@@ -380,4 +455,832 @@ public class TestGraph {
         assertEquals(a.toString(), "digraph {\n  \"Peter\";\n  \"Andy\";\n  \"Vincent\";\n  \"Tom\";"
             + "\n  \"Peter\" -> \"Andy\" [label=\"1\"];" + "\n  \"Vincent\" -> \"Tom\" [label=\"2\"];\n}");
     }
+
+    // Snapshot of random credits: movies m0.. and actors a0.., an
+    // edge each way per credit, so the graph is symmetric.
+    private static GraphSnapshot<String> randomCredits(long seed, int movies,
+        int actors) {
+        Random rnd = new Random(seed);
+        SnapshotBuilder<String> b = new SnapshotBuilder<String>();
+        for (int m = 0; m < movies; m++) {
+            int movie = b.vertex("m" + m);
+            int first = rnd.nextInt(actors);
+            b.credit(movie, b.vertex("a" + first));
+            b.credit(movie, b.vertex("a" + (first + 1 + rnd.nextInt(actors - 1))
+                % actors));
+        }
+        return b.build();
+    }
+
+    // Whether the snapshot has an edge from u to w.
+    private static boolean adjacent(GraphSnapshot<?> g, int u, int w) {
+        for (int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+            if (g.targets[k] == w) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Graph with the vertices and edges of a snapshot, plus a vertex
+    // that was removed again so that ids have a gap.
+    private static Graph<String, String> graphOf(GraphSnapshot<String> g) {
+        Graph<String, String> a = new SparseGraph<String, String>();
+        List<Vertex<String>> v = new ArrayList<Vertex<String>>();
+        for (int i = 0; i < g.size(); i++) {
+            v.add(a.insert(g.get(i)));
+            if (i == g.size() / 2) {
+                a.remove(a.insert("gone"));
+            }
+        }
+        for (int u = 0; u < g.size(); u++) {
+            for (int k = g.offsets[u]; k < g.offsets[u + 1]; k++) {
+                a.insert(v.get(u), v.get(g.targets[k]), "credit");
+            }
+        }
+        return a;
+    }
+
+    // Check that got numbers the same vertices and edges as want: ids
+    // and positions are inverse permutations, every edge is kept and
+    // BFS finds the same distances from every root.
+    private static void sameGraph(GraphSnapshot<String> want,
+        GraphSnapshot<String> got) {
+        int n = want.size();
+        assertEquals(got.size(), n);
+        assertEquals(got.edgeCount(), want.edgeCount());
+        int[] to = new int[n];
+        boolean[] taken = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            to[i] = got.id(want.position(i));
+            assertEquals(taken[to[i]], false);
+            taken[to[i]] = true;
+            assertEquals(want.id(got.position(to[i])), i);
+            assertEquals(got.id(got.position(i)), i);
+            assertEquals(got.get(to[i]), want.get(i));
+        }
+        for (int u = 0; u < n; u++) {
+            assertEquals(got.degree(to[u]), want.degree(u));
+            for (int k = want.offsets[u]; k < want.offsets[u + 1]; k++) {
+                assertEquals(adjacent(got, to[u], to[want.targets[k]]), true);
+            }
+        }
+        int[] wantDist = new int[n];
+        int[] gotDist = new int[n];
+        int[] queue = new int[n];
+        for (int r = 0; r < n; r++) {
+            assertEquals(got.distances(to[r], gotDist, queue),
+                want.distances(r, wantDist, queue));
+            for (int t = 0; t < n; t++) {
+                assertEquals(gotDist[to[t]], wantDist[t]);
+            }
+        }
+    }
+
+    @Theory
+    public void snapshotOrderKeepsTheGraph(GraphSnapshot.Order how) {
+        GraphSnapshot<String> credits = randomCredits(6, 80, 60);
+        Graph<String, String> a = graphOf(credits);
+        sameGraph(GraphSnapshot.of(a), GraphSnapshot.of(a, how));
+        sameGraph(credits, credits.reorder(how));
+        CompressedGraph<String, String> c = CompressedGraph.of(credits);
+        sameGraph(GraphSnapshot.of(c), credits.reorder(how).over(c));
+    }
+
+    @Test
+    public void landmarkIndexAgreesWithBfs() {
+        GraphSnapshot<String> g = randomCredits(3, 60, 50);
+        LandmarkIndex<String> index = new LandmarkIndex<String>(g);
+        int[] dist = new int[g.size()];
+        int[] queue = new int[g.size()];
+        for (int s = 0; s < g.size(); s++) {
+            g.distances(s, dist, queue);
+            for (int t = 0; t < g.size(); t++) {
+                assertEquals(index.distance(s, t), dist[t]);
+                int[] p = index.path(s, t);
+                if (dist[t] < 0) {
+                    assertEquals(p, null);
+                    continue;
+                }
+                assertEquals(p.length, dist[t] + 1);
+                assertEquals(p[0], s);
+                assertEquals(p[p.length - 1], t);
+                for (int i = 0; i + 1 < p.length; i++) {
+                    assertEquals(adjacent(g, p[i], p[i + 1]), true);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void bfsTreeCacheEvictsLeastRecentlyUsed() {
+        GraphSnapshot<String> g = randomCredits(4, 30, 25);
+        BfsTreeCache c = new BfsTreeCache(g, 2 * (4L * g.size() + 16));
+        assertEquals(c.capacity(), 2);
+        assertEquals(Arrays.equals(c.tree(0), g.parents(0)), true);
+        c.tree(1);
+        c.tree(0);
+        assertEquals(c.hits(), 1L);
+        assertEquals(c.misses(), 2L);
+        // 1 is older than 0 now, so it goes first
+        c.tree(2);
+        assertEquals(c.evictions(), 1L);
+        assertEquals(c.size(), 2);
+        c.tree(0);
+        assertEquals(c.hits(), 2L);
+        c.tree(1);
+        assertEquals(c.misses(), 4L);
+        assertEquals(Arrays.equals(c.path(1, 5),
+            GraphSnapshot.path(g.parents(1), 5)), true);
+        assertEquals(c.hits(), 3L);
+    }
+
+    // Chain of k diamonds: 2^k shortest paths from j0, vertex 0,
+    // to jk, the last vertex.
+    private static GraphSnapshot<String> diamonds(int k) {
+        SnapshotBuilder<String> b = new SnapshotBuilder<String>();
+        int join = b.vertex("j0");
+        for (int i = 0; i < k; i++) {
+            int top = b.vertex("top" + i);
+            int bottom = b.vertex("bottom" + i);
+            int next = b.vertex("j" + (i + 1));
+            b.credit(join, top);
+            b.credit(join, bottom);
+            b.credit(top, next);
+            b.credit(bottom, next);
+            join = next;
+        }
+        return b.build();
+    }
+
+    @Test
+    public void shortestPathsCountsAndListsEveryPath() {
+        GraphSnapshot<String> g = diamonds(3);
+        ShortestPaths<String> sp = new ShortestPaths<String>(g, 0, 9);
+        assertEquals(g.get(9), "j3");
+        assertEquals(sp.length(), 6);
+        assertEquals(sp.count(), BigInteger.valueOf(8));
+        HashSet<String> seen = new HashSet<String>();
+        for (int[] p : sp) {
+            assertEquals(p.length, 7);
+            assertEquals(p[0], 9);
+            assertEquals(p[6], 0);
+            for (int i = 0; i + 1 < p.length; i++) {
+                assertEquals(adjacent(g, p[i], p[i + 1]), true);
+            }
+            seen.add(Arrays.toString(p));
+        }
+        assertEquals(seen.size(), 8);
+    }
+
+    @Test
+    public void shortestPathsCountPastLong() {
+        GraphSnapshot<String> g = diamonds(70);
+        int last = g.size() - 1;
+        assertEquals(g.get(last), "j70");
+        ShortestPaths<String> sp = new ShortestPaths<String>(g, 0, last);
+        assertEquals(sp.length(), 140);
+        assertEquals(sp.count(), BigInteger.ONE.shiftLeft(70));
+        Iterator<int[]> iter = sp.iterator();
+        assertEquals(iter.next().length, 141);
+        assertEquals(iter.hasNext(), true);
+    }
+
+    @Test
+    public void compressedGraphKeepsAdjacency() {
+        Graph<String, String> a = new SparseGraph<String, String>();
+        Vertex<String> peter = a.insert("Peter");
+        Vertex<String> andy = a.insert("Andy");
+        Vertex<String> vincent = a.insert("Vincent");
+        Vertex<String> tom = a.insert("Tom");
+        a.insert(tom, peter, "1");
+        a.insert(tom, vincent, "2");
+        a.insert(peter, andy, "3");
+        Graph<String, String> c = CompressedGraph.of(a);
+        ArrayList<Integer> seen = new ArrayList<Integer>();
+        c.forEachOutNeighbour(c.id(c.vertex(a.id(tom))), seen::add);
+        assertEquals(seen.size(), 2);
+        assertEquals(c.vertex(seen.get(0)).get(), "Peter");
+        assertEquals(c.vertex(seen.get(1)).get(), "Vincent");
+        Iterator<Edge<String>> iter =
+            c.incoming(c.vertex(a.id(andy))).iterator();
+        assertEquals(c.from(iter.next()).get(), "Peter");
+        assertEquals(iter.hasNext(), false);
+        assertEquals(c.outgoing(c.vertex(a.id(andy))).iterator().hasNext(), false);
+    }
+
+    @Test
+    public void compressedSnapshotKeepsAdjacency() {
+        GraphSnapshot<String> g = randomCredits(5, 80, 60);
+        CompressedGraph<String, String> c = CompressedGraph.of(g);
+        assertEquals(c.edgeCount(), (long) g.edgeCount());
+        for (int v = 0; v < g.size(); v++) {
+            int[] want = Arrays.copyOfRange(g.targets, g.offsets[v],
+                g.offsets[v + 1]);
+            Arrays.sort(want);
+            ArrayList<Integer> seen = new ArrayList<Integer>();
+            c.forEachOutNeighbour(v, seen::add);
+            assertEquals(seen.size(), want.length);
+            for (int i = 0; i < want.length; i++) {
+                assertEquals((int) seen.get(i), want[i]);
+            }
+            assertEquals(c.vertex(v).get(), g.get(v));
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void compressedGraphIsReadOnly() {
+        Graph<String, String> a = new SparseGraph<String, String>();
+        a.insert("Peter");
+        CompressedGraph.of(a).insert("Andy");
+    }
+
+    @Test
+    public void snapshotBuilderMatchesSnapshotOfGraph() {
+        String[][] credits = {{"Diner", "Bacon", "Guttenberg"},
+            {"Footloose", "Bacon", "Singer", "Lithgow"},
+            {"Shrek", "Lithgow"}};
+        Graph<String, String> a = new SparseGraph<String, String>();
+        Map<String, Vertex<String>> seen = new HashMap<>();
+        SnapshotBuilder<String> b = new SnapshotBuilder<String>();
+        for (String[] line : credits) {
+            Vertex<String> m = a.insert(line[0]);
+            seen.put(line[0], m);
+            int mid = b.vertex(line[0]);
+            for (int i = 1; i < line.length; i++) {
+                Vertex<String> v = seen.get(line[i]);
+                if (v == null) {
+                    v = a.insert(line[i]);
+                    seen.put(line[i], v);
+                }
+                a.insert(m, v, "features");
+                a.insert(v, m, "acts in");
+                b.credit(mid, b.vertex(line[i]));
+            }
+        }
+        GraphSnapshot<String> want = GraphSnapshot.of(a);
+        for (int workers = 1; workers <= 4; workers++) {
+            GraphSnapshot<String> got = b.build(workers);
+            assertEquals(got.size(), want.size());
+            assertEquals(got.edgeCount(), want.edgeCount());
+            for (int i = 0; i < want.size(); i++) {
+                assertEquals(got.get(i), want.get(i));
+                assertEquals(got.id(got.position(i)), i);
+                assertEquals(Arrays.toString(got.parents(i)),
+                    Arrays.toString(want.parents(i)));
+            }
+        }
+    }
+
+    @Test
+    public void componentsSplitUnconnectedVertices() {
+        Components c = new Components();
+        c.union(0, 1);
+        c.union(2, 3);
+        c.union(1, 3);
+        c.union(5, 6);
+        assertEquals(c.vertices(), 7);
+        assertEquals(c.count(), 3);
+        assertEquals(c.connected(0, 2), true);
+        assertEquals(c.connected(0, 4), false);
+        assertEquals(c.connected(5, 6), true);
+        assertEquals(c.size(c.largest()), 4);
+        assertEquals(Arrays.toString(c.histogram()), "[1, 1, 1]");
+    }
+
+    @Test
+    public void boundedSearchStopsAtLimits() {
+        Graph<String, String> a = new SparseGraph<String, String>();
+        Vertex<String> prev = a.insert("v0");
+        for (int i = 1; i < 5; i++) {
+            Vertex<String> v = a.insert("v" + i);
+            a.insert(prev, v, "next");
+            prev = v;
+        }
+        long all = BoundedSearch.UNLIMITED;
+        BoundedSearch s = new BoundedSearch(a, 0, 4, null);
+        assertEquals(s.run(all, all, all, false), BoundedSearch.Status.FOUND);
+        assertEquals(s.path().length, 5);
+        s = new BoundedSearch(a, 0, 4, null);
+        assertEquals(s.run(3, all, all, false),
+            BoundedSearch.Status.BEYOND_DEPTH);
+        assertEquals(s.depth(), 3);
+        assertEquals(s.path(), null);
+        s = new BoundedSearch(a, 0, 4, null);
+        assertEquals(s.run(all, 2, all, false),
+            BoundedSearch.Status.BUDGET_EXCEEDED);
+        assertEquals(s.visited(), 2L);
+        s = new BoundedSearch(a, 4, 0, null);
+        assertEquals(s.run(all, all, all, false), BoundedSearch.Status.NO_PATH);
+    }
+
+    @Test
+    public void hubShortcutsKeepPathsShortest() {
+        // movies get ids 0 to 59, actors 60 to 139
+        Random rnd = new Random(2);
+        Graph<String, String> a = new SparseGraph<String, String>();
+        ArrayList<Vertex<String>> vs = new ArrayList<Vertex<String>>();
+        for (int i = 0; i < 140; i++) {
+            vs.add(a.insert((i < 60 ? "m" : "a") + i));
+        }
+        for (int m = 0; m < 60; m++) {
+            TreeSet<Integer> cast = new TreeSet<Integer>();
+            for (int k = 2 + rnd.nextInt(3); k > 0; k--) {
+                cast.add(60 + (m % 4 == 0 ? 0 : rnd.nextInt(80)));
+                cast.add(60 + rnd.nextInt(80));
+            }
+            for (int x : cast) {
+                a.insert(vs.get(m), vs.get(x), "credit");
+                a.insert(vs.get(x), vs.get(m), "credit");
+            }
+        }
+        HubProjection h = HubProjection.of(a, id -> id >= 60, 3, null);
+        assertEquals(h.size(), 3);
+        assertEquals(h.isHub(60), true);
+        assertEquals(h.isHub(0), false);
+        long all = BoundedSearch.UNLIMITED;
+        for (int t = 0; t < 140; t++) {
+            BoundedSearch plain = new BoundedSearch(a, 61, t, null);
+            BoundedSearch fast = new BoundedSearch(a, 61, t, null, h);
+            assertEquals(fast.run(all, all, all, true),
+                plain.run(all, all, all, true));
+            if (plain.status() != BoundedSearch.Status.FOUND) {
+                assertEquals(fast.frontier(), plain.frontier());
+            } else {
+                int[] p = fast.path();
+                assertEquals(p.length, plain.path().length);
+                for (int i = 0; i + 1 < p.length; i++) {
+                    int next = p[i + 1];
+                    boolean[] edge = {false};
+                    a.forEachOutNeighbour(p[i], w -> edge[0] |= w == next);
+                    assertEquals(edge[0], true);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void offHeapGraphSurvivesFile() throws IOException {
+        Graph<String, String> a = new SparseGraph<String, String>();
+        Vertex<String> peter = a.insert("Peter");
+        Vertex<String> andy = a.insert("Andy");
+        Vertex<String> vincent = a.insert("Vincent");
+        a.insert(vincent, peter, "1");
+        a.insert(vincent, andy, "2");
+        a.insert(peter, andy, "3");
+        File f = File.createTempFile("graph", ".bin");
+        f.deleteOnExit();
+        OffHeapGraph.of(a, id -> id + 1, f, null);
+        OffHeapGraph c = OffHeapGraph.open(f);
+        ArrayList<Integer> seen = new ArrayList<Integer>();
+        c.forEachOutNeighbour(a.id(vincent), seen::add);
+        assertEquals(seen.size(), 2);
+        assertEquals(c.vertex(seen.get(0)).get(), "Peter");
+        assertEquals(c.vertex(seen.get(1)).get(), "Andy");
+        assertEquals(c.kind(a.id(andy)), 2);
+        assertEquals(c.find("Andy"), a.id(andy));
+        assertEquals(c.find("Vincent"), a.id(vincent));
+        assertEquals(c.find("Nobody"), -1);
+        Iterator<Edge<String>> iter =
+            c.incoming(c.vertex(a.id(andy))).iterator();
+        assertEquals(c.from(iter.next()).get(), "Peter");
+        assertEquals(c.from(iter.next()).get(), "Vincent");
+        assertEquals(iter.hasNext(), false);
+        assertEquals(c.edgeCount(), 3L);
+    }
+
+    // A database file holding the given lines, deleted on exit.
+    private static File database(String... lines) throws IOException {
+        File f = File.createTempFile("cast", ".txt");
+        f.deleteOnExit();
+        try (PrintWriter w = new PrintWriter(f)) {
+            for (String l : lines) {
+                w.println(l);
+            }
+        }
+        return f;
+    }
+
+    @Test
+    public void kevinReloadForgetsTheOldGraph() throws IOException {
+        Kevin.load(database("One (1990)/Bacon, Kevin/Ann",
+            "Two (1991)/Ann/Bob").getPath());
+        List<String> p = Kevin.solve(Kevin.find("Bacon, Kevin"),
+            Kevin.find("Bob"));
+        assertEquals(p, Arrays.asList("Bob", "Two (1991)", "Ann",
+            "One (1990)", "Bacon, Kevin"));
+
+        // more vertices, and the ones named before have other ids
+        Kevin.load(database("Six (1996)/Cy/Dee", "Five (1995)/Dee/Eve",
+            "Four (1994)/Bob/Eve", "Three (1993)/Bacon, Kevin/Bob").getPath());
+        p = Kevin.solve(Kevin.find("Bacon, Kevin"), Kevin.find("Cy"));
+        assertEquals(p, Arrays.asList("Cy", "Six (1996)", "Dee",
+            "Five (1995)", "Eve", "Four (1994)", "Bob", "Three (1993)",
+            "Bacon, Kevin"));
+        p = Kevin.solve(Kevin.find("Bacon, Kevin"), Kevin.find("Bob"));
+        assertEquals(p, Arrays.asList("Bob", "Three (1993)",
+            "Bacon, Kevin"));
+        assertEquals(Kevin.find("Ann"), null);
+        assertEquals(Kevin.names().closest("Bob", 1),
+            Arrays.asList("Bob"));
+    }
+
+    @Test
+    public void kevinCompressedFindsTheSamePaths() throws IOException {
+        File db = database("One (1990)/Bacon, Kevin/Ann",
+            "Two (1991)/Ann/Bob", "Three (1993)/Bob/Cy/Dee",
+            "Four (1994)/Eve/Fay");
+        String[][] pairs = {{"Bacon, Kevin", "Dee"}, {"Cy", "Ann"},
+            {"Fay", "Eve"}, {"Bacon, Kevin", "Eve"}};
+        List<List<String>> want = new ArrayList<List<String>>();
+        Kevin.load(db.getPath());
+        for (String[] p : pairs) {
+            want.add(Kevin.solve(Kevin.find(p[0]), Kevin.find(p[1])));
+        }
+        Kevin.load(db.getPath(), true);
+        for (int i = 0; i < pairs.length; i++) {
+            assertEquals(Kevin.solve(Kevin.find(pairs[i][0]),
+                Kevin.find(pairs[i][1])), want.get(i));
+        }
+    }
+
+    @Test
+    public void kevinReadsYearsFromTitles() {
+        assertEquals(Kevin.year("Footloose (1984)"), (short) 1984);
+        assertEquals(Kevin.year("Hamlet (1990/I)"), (short) 1990);
+        assertEquals(Kevin.year("Murder in the First (1995) (TV)"),
+            (short) 1995);
+        assertEquals(Kevin.year("(1999)"), (short) 1999);
+        assertEquals(Kevin.year("Diner"), Kevin.UNKNOWN_YEAR);
+        assertEquals(Kevin.year("Diner (TV)"), Kevin.UNKNOWN_YEAR);
+        assertEquals(Kevin.year("Diner (82)"), Kevin.UNKNOWN_YEAR);
+        assertEquals(Kevin.year("Lost (0000)"), Kevin.UNKNOWN_YEAR);
+    }
+
+    @Test
+    public void kevinExcludesMoviesByYear() throws IOException {
+        Graph<String, String> g = Kevin.load(database(
+            "Old (1960)/Bacon, Kevin/Ann",
+            "Mid (1984)/Ann/Bob", "New (2005)/Bob/Cy",
+            "Undated/Cy/Dee", "Lost (0000)/Dee/Eve").getPath());
+        int old = g.id(Kevin.find("Old (1960)"));
+        int mid = g.id(Kevin.find("Mid (1984)"));
+        int fresh = g.id(Kevin.find("New (2005)"));
+        int undated = g.id(Kevin.find("Undated"));
+        int lost = g.id(Kevin.find("Lost (0000)"));
+
+        assertEquals(Kevin.excludeYears(1980, 1999),
+            bits(old, fresh, undated, lost));
+        assertEquals(Kevin.excludeYears("1980-1999"),
+            bits(old, fresh, undated, lost));
+        assertEquals(Kevin.excludeYears("-1970"),
+            bits(mid, fresh, undated, lost));
+        assertEquals(Kevin.excludeYears("2000-"),
+            bits(old, mid, undated, lost));
+        assertEquals(Kevin.excludeYears("1984"),
+            bits(old, fresh, undated, lost));
+        assertEquals(Kevin.excludeYears("1985"),
+            bits(old, mid, fresh, undated, lost));
+
+        // a movie from year 0 is still a movie, not an actor
+        assertEquals(Kevin.names().closest("Lost (0000)", 5)
+            .contains("Lost (0000)"), false);
+        assertEquals(Kevin.names().closest("Eve", 1),
+            Arrays.asList("Eve"));
+    }
+
+    private static BitSet bits(int... ids) {
+        BitSet b = new BitSet();
+        for (int i : ids) {
+            b.set(i);
+        }
+        return b;
+    }
+
+    @Test
+    public void offHeapFileKnowsItsSource() throws IOException {
+        File db = database("One (1990)/Bacon, Kevin/Ann");
+        Graph<String, String> g = Kevin.load(db.getPath());
+        File f = File.createTempFile("graph", ".bin");
+        f.deleteOnExit();
+        OffHeapGraph.of(g, id -> 1, f, db);
+        assertEquals(OffHeapGraph.open(f).builtFrom(db), true);
+        assertEquals(OffHeapGraph.open(f).builtFrom(database(
+            "One (1990)/Bacon, Kevin/Ann")), false);
+        assertEquals(db.setLastModified(db.lastModified() + 2000), true);
+        assertEquals(OffHeapGraph.open(f).builtFrom(db), false);
+
+        // cut short or padded, the file no longer matches its header
+        long length = f.length();
+        for (long l : new long[] {length - 4, 40, length + 8}) {
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                raf.setLength(l);
+            }
+            boolean failed = false;
+            try {
+                OffHeapGraph.open(f);
+            } catch (IOException e) {
+                failed = true;
+            }
+            assertEquals(failed, true);
+        }
+    }
+
+    // Cast lines that put CastReader's chunking on the spot: one
+    // crossing the first chunk boundary, one longer than a chunk,
+    // CRLF line ends in between and no newline at the very end.
+    private static String awkwardCast() {
+        StringBuilder b = new StringBuilder();
+        int m = 0;
+        while (b.length() < (1 << 20) - 40) {
+            b.append("Movie ").append(m).append(" (1990)/Actor ")
+                .append(m % 97).append("/Actor ").append(m % 89)
+                .append(m % 3 == 0 ? "\r\n" : "\n");
+            m++;
+        }
+        b.append("Across the boundary (1991)/Actor 1/Actor 2/Actor 3")
+            .append("/Actor 4/Actor 5\n");
+        b.append("Long (1992)");
+        for (int i = 0; b.length() < 4 << 20; i++) {
+            b.append("/Extra ").append(i);
+        }
+        b.append("\r\nBad (1993)/Actor 1\n");
+        b.append("Movie ").append(m).append(" (1994)/Actor 1/Actor 2");
+        return b.toString();
+    }
+
+    @Test
+    public void castReaderMatchesBufferedReader() throws IOException {
+        String cast = awkwardCast();
+        File plain = File.createTempFile("cast", ".txt");
+        plain.deleteOnExit();
+        File gzipped = File.createTempFile("cast", ".txt.gz");
+        gzipped.deleteOnExit();
+        try (Writer w = new FileWriter(plain)) {
+            w.write(cast);
+        }
+        try (Writer w = new OutputStreamWriter(new GZIPOutputStream(
+            new FileOutputStream(gzipped)))) {
+            w.write(cast);
+        }
+        for (File f : new File[] {plain, gzipped}) {
+            try (BufferedReader expected = new BufferedReader(
+                new InputStreamReader(f == plain ? new FileInputStream(f)
+                    : new GZIPInputStream(new FileInputStream(f))));
+                CastReader reader = new CastReader(f.getPath(), 3)) {
+                int lines = 0;
+                String line;
+                while ((line = expected.readLine()) != null) {
+                    assertEquals(Arrays.asList(reader.next()),
+                        Arrays.asList(line.split("/")));
+                    lines++;
+                }
+                assertEquals(reader.next(), null);
+                assertEquals(lines > 10000, true);
+            }
+        }
+    }
+
+    @Test
+    public void castReaderReportsParseFailures() throws IOException {
+        File f = File.createTempFile("cast", ".txt");
+        f.deleteOnExit();
+        try (Writer w = new FileWriter(f)) {
+            w.write(awkwardCast());
+        }
+        CastReader reader = new CastReader(f.getPath(), 2, line -> {
+            if (line.startsWith("Bad")) {
+                throw new IllegalStateException("bad line");
+            }
+            return line.split("/");
+        });
+        Throwable failure = null;
+        int records = 0;
+        try {
+            while (reader.next() != null) {
+                records++;
+            }
+        } catch (IOException e) {
+            failure = e.getCause();
+        } finally {
+            reader.close();
+        }
+        assertEquals(failure instanceof IllegalStateException, true);
+        assertEquals(failure.getMessage(), "bad line");
+        // the chunks before the one that failed came through
+        assertEquals(records > 10000, true);
+    }
+
+    @Test
+    public void shardCoordinatorMatchesKevin() throws IOException {
+        File f = File.createTempFile("cast", ".txt");
+        f.deleteOnExit();
+        Random rnd = new Random(5);
+        try (PrintWriter w = new PrintWriter(f)) {
+            w.println("Movie 0 (1990)/Bacon, Kevin/a0");
+            // three different actors in every other movie
+            for (int m = 1; m < 40; m++) {
+                int x = rnd.nextInt(30);
+                w.println("Movie " + m + " (1990)/a" + x
+                    + "/a" + (x + 1 + rnd.nextInt(14)) % 30
+                    + "/a" + (x + 15 + rnd.nextInt(14)) % 30);
+            }
+            w.println("Movie 40 (1990)/Loner");
+        }
+        Graph<String, String> g = Kevin.load(f.getPath());
+        try (ShardCoordinator c = new ShardCoordinator(2)) {
+            c.load(f.getPath());
+            int bacon = c.find("Bacon, Kevin");
+            for (int a = 0; a <= 30; a++) {
+                String name = a < 30 ? "a" + a : "Loner";
+                if (c.find(name) == null) {
+                    continue;
+                }
+                int actor = c.find(name);
+                BoundedSearch s = new BoundedSearch(g,
+                    g.id(Kevin.find("Bacon, Kevin")),
+                    g.id(Kevin.find(name)), null);
+                s.run(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE, false);
+                int[] expected = s.path();
+                int[] path = c.solve(bacon, actor);
+                if (expected == null) {
+                    assertEquals(path, null);
+                    continue;
+                }
+                assertEquals(path.length, expected.length);
+                for (int i = 0; i < path.length; i++) {
+                    assertEquals(c.name(path[i]),
+                        g.vertex(expected[i]).get());
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shardCoordinatorNeedsShards() throws IOException {
+        new ShardCoordinator(0);
+    }
+
+    @Test
+    public void shardCoordinatorFailsIfWorkersDie() throws IOException {
+        // workers that can't start must not leave us waiting
+        String options = System.getProperty("bacon.worker.options");
+        System.setProperty("bacon.worker.options", "-XX:+NoSuchOption");
+        boolean failed = false;
+        try {
+            new ShardCoordinator(2).close();
+        } catch (IOException e) {
+            failed = true;
+        } finally {
+            if (options == null) {
+                System.clearProperty("bacon.worker.options");
+            } else {
+                System.setProperty("bacon.worker.options", options);
+            }
+        }
+        assertEquals(failed, true);
+    }
+
+    @Test
+    public void nameIndexFindsCloseNames() {
+        NameIndex index = new NameIndex(Arrays.asList("Bacon, Kevin",
+            "Bacon, Kevin (I)", "Baker, Kevin", "Bacall, Lauren",
+            "Kline, Kevin", "Costner, Kevin", "Bacon, Kyra"));
+        assertEquals(index.size(), 7);
+        assertEquals(index.closest("Bacon, Kevin", 2),
+            Arrays.asList("Bacon, Kevin", "Bacon, Kevin (I)"));
+        // one letter missing, two swapped, two wrong
+        assertEquals(index.closest("Bacn, Kevin", 1).get(0), "Bacon, Kevin");
+        assertEquals(index.closest("Bcaon, Kevin", 1).get(0), "Bacon, Kevin");
+        assertEquals(index.closest("Bakon, Kevon", 1).get(0), "Bacon, Kevin");
+        // fewer names than asked for share enough trigrams
+        assertEquals(index.closest("Bacall, Lauren", 10),
+            Arrays.asList("Bacall, Lauren"));
+        assertEquals(index.closest("Lauren", 10),
+            Arrays.asList("Bacall, Lauren"));
+        assertEquals(index.closest("zzzz", 10).size(), 0);
+        assertEquals(index.closest("Bacon, Kevin", 0).size(), 0);
+    }
+
+    @Test
+    public void nameIndexBreaksTiesById() {
+        // the same trigrams once lower-cased, so the same score
+        List<String> names = Arrays.asList("ann lee", "Bob", "ANN LEE");
+        assertEquals(new NameIndex(names).closest("Ann Lee", 3),
+            Arrays.asList("ann lee", "ANN LEE"));
+        names = Arrays.asList("ANN LEE", "Bob", "ann lee");
+        assertEquals(new NameIndex(names).closest("Ann Lee", 1),
+            Arrays.asList("ANN LEE"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nameIndexNeedsCount() {
+        new NameIndex(Arrays.asList("Bob")).closest("Bob", -1);
+    }
+
+    // Distinct trigrams of a name the way NameIndex cuts it.
+    private static HashSet<String> trigramsOf(String name) {
+        String s = "  " + name.toLowerCase(Locale.ROOT) + " ";
+        HashSet<String> out = new HashSet<String>();
+        for (int i = 0; i + 3 <= s.length(); i++) {
+            out.add(s.substring(i, i + 3));
+        }
+        return out;
+    }
+
+    // The k names closest to a query by comparing it with every one.
+    private static List<String> closestByHand(List<String> names,
+        String query, int k) {
+        HashSet<String> q = trigramsOf(query);
+        int need = NameIndex.minOverlap(q.size());
+        ArrayList<long[]> found = new ArrayList<long[]>();
+        for (int i = 0; i < names.size(); i++) {
+            HashSet<String> g = trigramsOf(names.get(i));
+            int shared = 0;
+            for (String t : q) {
+                if (g.contains(t)) {
+                    shared++;
+                }
+            }
+            if (shared >= need) {
+                found.add(new long[] {
+                    (2L << 20) * shared / (q.size() + g.size()), i});
+            }
+        }
+        found.sort((a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0])
+            : Long.compare(a[1], b[1]));
+        ArrayList<String> out = new ArrayList<String>();
+        for (int i = 0; i < k && i < found.size(); i++) {
+            out.add(names.get((int) found.get(i)[1]));
+        }
+        return out;
+    }
+
+    @Test
+    public void nameIndexMatchesComparingEveryName() {
+        Random rnd = new Random(6);
+        // few syllables make long posting lists and a table with a
+        // slot per name; random letters make short ones and a hashed
+        // table
+        String[] syllables = {"ka", "ro", "mi", "tel", "an", "son", "ber",
+            "li", "vo", "den"};
+        for (int kind = 0; kind < 2; kind++) {
+            ArrayList<String> names = new ArrayList<String>();
+            for (int i = 0; i < 3000; i++) {
+                StringBuilder b = new StringBuilder();
+                for (int j = 3 + rnd.nextInt(4); j > 0; j--) {
+                    b.append(kind == 0 ? syllables[rnd.nextInt(10)]
+                        : String.valueOf((char) ('a' + rnd.nextInt(26))));
+                }
+                names.add(b.toString());
+            }
+            NameIndex index = new NameIndex(names);
+            for (int i = 0; i < 200; i++) {
+                char[] query = names.get(rnd.nextInt(names.size()))
+                    .toCharArray();
+                for (int typos = rnd.nextInt(3); typos > 0; typos--) {
+                    query[rnd.nextInt(query.length)] =
+                        (char) ('a' + rnd.nextInt(26));
+                }
+                int k = 1 + rnd.nextInt(10);
+                assertEquals(index.closest(new String(query), k),
+                    closestByHand(names, new String(query), k));
+            }
+        }
+    }
+
+    @Test
+    public void eccentricityBoundsHoldOnRandomGraph() {
+        Random rnd = new Random(1);
+        SnapshotBuilder<String> b = new SnapshotBuilder<String>();
+        // a long, thin cast list so the diameter is interesting
+        for (int m = 0; m < 300; m++) {
+            int movie = b.vertex("m" + m);
+            int first = rnd.nextInt(200);
+            b.credit(movie, b.vertex("a" + first));
+            b.credit(movie, b.vertex("a" + (first + 1 + rnd.nextInt(3))));
+        }
+        GraphSnapshot<String> g = b.build();
+        int start = 0;
+        for (int v = 1; v < g.size(); v++) {
+            if (g.degree(v) > g.degree(start)) {
+                start = v;
+            }
+        }
+        Eccentricities e = new Eccentricities(g, start);
+        assertEquals(e.members().length > 50, true);
+        int[] dist = new int[g.size()];
+        int[] queue = new int[g.size()];
+        int diameter = 0;
+        for (int v : e.members()) {
+            int reached = g.distances(v, dist, queue);
+            int ecc = dist[queue[reached - 1]];
+            diameter = Math.max(diameter, ecc);
+            assertEquals(e.lower(v) <= ecc && ecc <= e.upper(v), true);
+        }
+        assertEquals(e.diameter(), diameter);
+        g.distances(e.from(), dist, queue);
+        assertEquals(dist[e.to()], diameter);
+        assertEquals(e.passes() < e.members().length, true);
+    }
 }
@@ -1,5 +1,8 @@
 package graphs;
 
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
 /**
     Directed graphs.
 
@@ -107,6 +110,66 @@ public interface Graph<V, E> {
     Iterable<Edge<E>> incoming(Vertex<V> v)
         throws IllegalArgumentException;
 
+    /**
+        Visit out-neighbours of vertex.
+
+        Same as calling to() on every edge from outgoing(), but
+        implementations can do it without allocating an iterator
+        or validating each edge again.
+
+        @param v Vertex position to explore.
+        @param f Called with the vertex position each outgoing
+            edge leads to, in the order outgoing() would return.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    default void forEachOutNeighbour(Vertex<V> v, Consumer<? super Vertex<V>> f)
+        throws IllegalArgumentException {
+        for (Edge<E> e : this.outgoing(v)) {
+            f.accept(this.to(e));
+        }
+    }
+    /**
+        Visit out-neighbours of vertex by id.
+        @param v Id of vertex to explore.
+        @param f Called with the id of the vertex each outgoing
+            edge leads to, in the order outgoing() would return.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    void forEachOutNeighbour(int v, IntConsumer f)
+        throws IllegalArgumentException;
+
+    /**
+        Id of vertex.
+
+        Ids are small non-negative integers that stay the same for
+        the lifetime of the vertex, so clients can keep per-vertex
+        state in plain arrays of idBound() entries instead of in
+        labels.
+
+        @param v Vertex position to query.
+        @return Id of the vertex.
+        @throws IllegalArgumentException If vertex position
+            is invalid.
+    */
+    int id(Vertex<V> v)
+        throws IllegalArgumentException;
+    /**
+        Vertex with id.
+        @param id Id to look up.
+        @return Vertex position with that id.
+        @throws IllegalArgumentException If there is no vertex
+            with that id.
+    */
+    Vertex<V> vertex(int id)
+        throws IllegalArgumentException;
+    /**
+        Upper bound on vertex ids.
+        @return One more than the largest id handed out so far.
+    */
+    int idBound();
+
     /**
         Start vertex of edge.
         @param e Edge position to explore.